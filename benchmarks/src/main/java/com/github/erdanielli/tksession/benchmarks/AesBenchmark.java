@@ -0,0 +1,59 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.benchmarks;
+
+import com.github.erdanielli.tksession.NewSession;
+import com.github.erdanielli.tksession.Session;
+import com.github.erdanielli.tksession.serializer.TkAesSerializer;
+import com.github.erdanielli.tksession.serializer.TkCompactSerializer;
+import com.github.erdanielli.tksession.serializer.TkSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.UUID;
+
+/**
+ * Encryption stage shared by all threads, as in the filter. Compare thread counts with {@code
+ * -t 1}, {@code -t 8} and {@code -t 32}.
+ *
+ * @author erdanielli
+ */
+@State(Scope.Benchmark)
+public class AesBenchmark {
+  private TkSerializer serializer;
+  private Session session;
+  private byte[] token;
+
+  @Setup
+  public void setup() {
+    serializer = new TkAesSerializer("benchmark-secret", new TkCompactSerializer());
+    session = new NewSession();
+    for (int i = 0; i < 12; i++) {
+      session.setAttribute("attribute" + i, UUID.randomUUID().toString());
+    }
+    token = serializer.write(session);
+  }
+
+  @Benchmark
+  public byte[] encode() {
+    return serializer.write(session);
+  }
+
+  @Benchmark
+  public Session decode() {
+    return serializer.read(token);
+  }
+}
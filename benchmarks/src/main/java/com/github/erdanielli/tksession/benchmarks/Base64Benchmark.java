@@ -0,0 +1,108 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.benchmarks;
+
+import com.github.erdanielli.tksession.NewSession;
+import com.github.erdanielli.tksession.Session;
+import com.github.erdanielli.tksession.serializer.TkBase64Serializer;
+import com.github.erdanielli.tksession.serializer.TkSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Base64;
+import java.util.Random;
+
+/**
+ * Base64 stage against {@link java.util.Base64}, on payloads of typical token sizes. Run with
+ * {@code -prof gc} to compare allocation per operation.
+ *
+ * @author erdanielli
+ */
+@State(Scope.Benchmark)
+public class Base64Benchmark {
+
+  @Param({"256", "1024", "4096"})
+  int size;
+
+  private final Session session = new NewSession();
+  private byte[] payload;
+  private String standardToken;
+  private String urlSafeToken;
+  private TkBase64Serializer standard;
+  private TkBase64Serializer urlSafe;
+
+  @Setup
+  public void setup() {
+    payload = new byte[size];
+    new Random(size).nextBytes(payload);
+    final TkSerializer fixed = new FixedPayload(payload);
+    standard = new TkBase64Serializer(fixed);
+    urlSafe = new TkBase64Serializer(fixed, true);
+    standardToken = standard.writeToken(session);
+    urlSafeToken = urlSafe.writeToken(session);
+  }
+
+  @Benchmark
+  public String jdkEncode() {
+    return Base64.getEncoder().encodeToString(payload);
+  }
+
+  @Benchmark
+  public byte[] jdkDecode() {
+    return Base64.getDecoder().decode(standardToken);
+  }
+
+  @Benchmark
+  public String encodeStandard() {
+    return standard.writeToken(session);
+  }
+
+  @Benchmark
+  public String encodeUrlSafe() {
+    return urlSafe.writeToken(session);
+  }
+
+  @Benchmark
+  public Session decodeStandard() {
+    return standard.readToken(standardToken);
+  }
+
+  @Benchmark
+  public Session decodeUrlSafe() {
+    return urlSafe.readToken(urlSafeToken);
+  }
+
+  /** Isolates the base64 stage from the rest of the chain. */
+  private static final class FixedPayload implements TkSerializer {
+    private final byte[] payload;
+    private final Session session = new NewSession();
+
+    FixedPayload(byte[] payload) {
+      this.payload = payload;
+    }
+
+    @Override
+    public Session read(byte[] token) {
+      return token.length == payload.length ? session : null;
+    }
+
+    @Override
+    public byte[] write(Session session) {
+      return payload;
+    }
+  }
+}
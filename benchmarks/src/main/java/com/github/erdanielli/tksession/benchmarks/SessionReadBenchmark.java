@@ -0,0 +1,68 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.benchmarks;
+
+import com.github.erdanielli.tksession.NewSession;
+import com.github.erdanielli.tksession.Session;
+import com.github.erdanielli.tksession.serializer.TkCompactSerializer;
+import com.github.erdanielli.tksession.serializer.TkSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Restores a session of a dozen attributes, as a request touching only one of them would, and
+ * writes it back.
+ *
+ * @author erdanielli
+ */
+@State(Scope.Benchmark)
+public class SessionReadBenchmark {
+  private final TkSerializer serializer = new TkCompactSerializer();
+  private byte[] bytes;
+
+  @Setup
+  public void setup() {
+    final Session session = new NewSession();
+    for (int i = 0; i < 4; i++) {
+      session.setAttribute("id" + i, UUID.randomUUID());
+      session.setAttribute("text" + i, "some attribute value " + i);
+      session.setAttribute("list" + i, new ArrayList<>(Arrays.asList(i, Instant.now(), "x")));
+    }
+    bytes = serializer.write(session);
+  }
+
+  @Benchmark
+  public Session read() {
+    return serializer.read(bytes);
+  }
+
+  @Benchmark
+  public Object readOneAttribute() {
+    return serializer.read(bytes).getAttribute("id0");
+  }
+
+  @Benchmark
+  public byte[] readThenWrite() {
+    final Session session = serializer.read(bytes);
+    session.getAttribute("id0");
+    return serializer.write(session);
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.benchmarks;
+
+import com.github.erdanielli.tksession.NewSession;
+import com.github.erdanielli.tksession.Session;
+import com.github.erdanielli.tksession.serializer.TkAesSerializer;
+import com.github.erdanielli.tksession.serializer.TkCipherSuite;
+import com.github.erdanielli.tksession.serializer.TkCompactSerializer;
+import com.github.erdanielli.tksession.serializer.TkHmacSerializer;
+import com.github.erdanielli.tksession.serializer.TkKeyRingBuilder;
+import com.github.erdanielli.tksession.serializer.TkSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.UUID;
+
+/**
+ * Encrypting with AES-GCM, ChaCha20-Poly1305 or the deterministic AES-SIV versus only signing with
+ * HMAC-SHA256, on the same session.
+ *
+ * @author erdanielli
+ */
+@State(Scope.Benchmark)
+public class SigningBenchmark {
+  @Param({"aes", "chacha20", "siv", "hmac"})
+  public String mode;
+
+  private TkSerializer serializer;
+  private Session session;
+  private byte[] token;
+
+  @Setup
+  public void setup() {
+    if ("hmac".equals(mode)) {
+      serializer = new TkHmacSerializer("benchmark-secret", new TkCompactSerializer());
+    } else if ("chacha20".equals(mode) || "siv".equals(mode)) {
+      serializer =
+          new TkAesSerializer(
+              new TkKeyRingBuilder()
+                  .add("benchmark-secret")
+                  .suite(
+                      "siv".equals(mode)
+                          ? TkCipherSuite.aesSiv()
+                          : TkCipherSuite.chaCha20Poly1305())
+                  .build(),
+              new TkCompactSerializer());
+    } else {
+      serializer = new TkAesSerializer("benchmark-secret", new TkCompactSerializer());
+    }
+    session = new NewSession();
+    for (int i = 0; i < 12; i++) {
+      session.setAttribute("attribute" + i, UUID.randomUUID().toString());
+    }
+    token = serializer.write(session);
+  }
+
+  @Benchmark
+  public byte[] encode() {
+    return serializer.write(session);
+  }
+
+  @Benchmark
+  public Session decode() {
+    return serializer.read(token);
+  }
+}
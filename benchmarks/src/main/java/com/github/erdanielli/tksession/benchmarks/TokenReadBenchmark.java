@@ -0,0 +1,65 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.benchmarks;
+
+import com.github.erdanielli.tksession.NewSession;
+import com.github.erdanielli.tksession.Session;
+import com.github.erdanielli.tksession.serializer.TkAesSerializer;
+import com.github.erdanielli.tksession.serializer.TkBase64Serializer;
+import com.github.erdanielli.tksession.serializer.TkCompactSerializer;
+import com.github.erdanielli.tksession.serializer.TkSessionCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.UUID;
+
+/**
+ * Reads the same token over and over, as a burst of requests from one client would, with and
+ * without a session cache.
+ *
+ * @author erdanielli
+ */
+@State(Scope.Benchmark)
+public class TokenReadBenchmark {
+  private final TkBase64Serializer uncached =
+      new TkBase64Serializer(new TkAesSerializer("secr3t", new TkCompactSerializer()));
+  private final TkBase64Serializer cached =
+      new TkBase64Serializer(
+          new TkAesSerializer("secr3t", new TkCompactSerializer()),
+          false,
+          new TkSessionCache(1024));
+  private String token;
+
+  @Setup
+  public void setup() {
+    final Session session = new NewSession();
+    for (int i = 0; i < 4; i++) {
+      session.setAttribute("id" + i, UUID.randomUUID());
+      session.setAttribute("text" + i, "some attribute value " + i);
+    }
+    token = uncached.writeToken(session);
+  }
+
+  @Benchmark
+  public Object uncached() {
+    return uncached.readToken(token).getAttribute("id0");
+  }
+
+  @Benchmark
+  public Object cached() {
+    return cached.readToken(token).getAttribute("id0");
+  }
+}
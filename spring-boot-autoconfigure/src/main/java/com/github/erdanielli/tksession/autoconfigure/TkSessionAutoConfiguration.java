@@ -1,31 +1,70 @@
 package com.github.erdanielli.tksession.autoconfigure;
 
+import com.github.erdanielli.tksession.filter.TkCookieTransportBuilder;
+import com.github.erdanielli.tksession.filter.TkHeaderTransport;
 import com.github.erdanielli.tksession.filter.TkSessionFilter;
+import com.github.erdanielli.tksession.filter.TkTransport;
 import com.github.erdanielli.tksession.listener.SessionListenerNotifier;
 import com.github.erdanielli.tksession.listener.SessionListenerNotifierBuilder;
 import com.github.erdanielli.tksession.serializer.TkAesSerializer;
+import com.github.erdanielli.tksession.serializer.TkAttributeCodec;
+import com.github.erdanielli.tksession.serializer.TkAttributeCodecs;
+import com.github.erdanielli.tksession.serializer.TkAttributeCodecsBuilder;
+import com.github.erdanielli.tksession.serializer.TkAttributeStore;
 import com.github.erdanielli.tksession.serializer.TkBase64Serializer;
+import com.github.erdanielli.tksession.serializer.TkCipherSuite;
+import com.github.erdanielli.tksession.serializer.TkCompactSerializer;
+import com.github.erdanielli.tksession.serializer.TkCompressingSerializer;
+import com.github.erdanielli.tksession.serializer.TkCompressionDictionary;
+import com.github.erdanielli.tksession.serializer.TkHmacSerializer;
+import com.github.erdanielli.tksession.serializer.TkFileAttributeStore;
 import com.github.erdanielli.tksession.serializer.TkJdkSerializer;
+import com.github.erdanielli.tksession.serializer.TkKeyRing;
+import com.github.erdanielli.tksession.serializer.TkKeyRingBuilder;
+import com.github.erdanielli.tksession.serializer.TkMemoryAttributeStore;
+import com.github.erdanielli.tksession.serializer.TkNonceGenerator;
+import com.github.erdanielli.tksession.serializer.TkSecretWatcher;
 import com.github.erdanielli.tksession.serializer.TkSerializer;
+import com.github.erdanielli.tksession.serializer.TkSessionCache;
+import com.github.erdanielli.tksession.serializer.TkTokenGuard;
+import com.github.erdanielli.tksession.serializer.TkVersionedSerializer;
+import com.github.erdanielli.tksession.serializer.TkVersionedSerializerBuilder;
+import com.github.erdanielli.tksession.serializer.security.CompactSecurityContextSerializer;
+import com.github.erdanielli.tksession.serializer.security.SecurityAttributeNames;
 import com.github.erdanielli.tksession.serializer.security.SecurityContextSerializer;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.AutoConfigureBefore;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.boot.autoconfigure.session.SessionProperties;
 import org.springframework.boot.autoconfigure.web.ServerProperties;
 import org.springframework.boot.autoconfigure.web.reactive.HttpHandlerAutoConfiguration;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.convert.DurationStyle;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StreamUtils;
 
 import javax.servlet.http.HttpSessionAttributeListener;
 import javax.servlet.http.HttpSessionListener;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Paths;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
 
 import static org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type.SERVLET;
 
@@ -45,26 +84,264 @@ public class TkSessionAutoConfiguration {
     return builder.build();
   }
 
+  @Bean
+  TkAttributeCodecs tkAttributeCodecs(
+      ObjectProvider<Collection<TkAttributeCodec<?>>> codecs,
+      @Value("${tksession.attribute-names:}") String[] attributeNames) {
+    final TkAttributeCodecsBuilder builder = new TkAttributeCodecsBuilder();
+    codecs.ifAvailable(col -> col.forEach(builder::add));
+    if (ClassUtils.isPresent("org.springframework.security.core.Authentication", null)) {
+      builder.addNames(SecurityAttributeNames.ALL);
+    }
+    return builder.addNames(attributeNames).build();
+  }
+
+  /** Values offloaded from compact tokens, either {@code memory} or {@code file}. */
+  @Bean
+  @ConditionalOnProperty("tksession.store.type")
+  TkAttributeStore tkAttributeStore(
+      @Value("${tksession.store.type}") String type,
+      @Value("${tksession.store.size:10000}") int size,
+      @Value("${tksession.store.directory:}") String directory)
+      throws IOException {
+    return "file".equals(type)
+        ? new TkFileAttributeStore(Paths.get(directory))
+        : new TkMemoryAttributeStore(size);
+  }
+
   @Bean
   @ConditionalOnClass(name = "org.springframework.security.core.Authentication")
   @Qualifier("session")
   TkSerializer securityContextSerializer(
-      @Value("${tksession.springsecurity.simple:true}") boolean simple) {
-    return simple ? new SecurityContextSerializer() : new TkJdkSerializer();
+      @Value("${tksession.springsecurity.simple:true}") boolean simple,
+      @Value("${tksession.format:jdk}") String format,
+      @Value("${tksession.versioned:false}") boolean versioned,
+      @Value("${tksession.unversioned-format:${tksession.format:jdk}}") String unversionedFormat,
+      @Value("${tksession.store.threshold:1024}") int storeThreshold,
+      ObjectProvider<TkAttributeStore> store,
+      TkAttributeCodecs codecs) {
+    final Function<String, TkSerializer> engines =
+        engine -> {
+          if ("compact".equals(engine)) {
+            return simple
+                ? new CompactSecurityContextSerializer(
+                    codecs, store.getIfAvailable(), storeThreshold)
+                : new TkCompactSerializer(codecs, store.getIfAvailable(), storeThreshold);
+          }
+          return simple ? new SecurityContextSerializer() : new TkJdkSerializer();
+        };
+    return versioned
+        ? versionedSerializer(format, unversionedFormat, engines)
+        : engines.apply(format);
   }
 
   @Bean
   @ConditionalOnMissingClass("org.springframework.security.core.Authentication")
   @Qualifier("session")
-  TkSerializer sessionSerializer() {
-    return new TkJdkSerializer();
+  TkSerializer sessionSerializer(
+      @Value("${tksession.format:jdk}") String format,
+      @Value("${tksession.versioned:false}") boolean versioned,
+      @Value("${tksession.unversioned-format:${tksession.format:jdk}}") String unversionedFormat,
+      @Value("${tksession.store.threshold:1024}") int storeThreshold,
+      ObjectProvider<TkAttributeStore> store,
+      TkAttributeCodecs codecs) {
+    final Function<String, TkSerializer> engines =
+        engine ->
+            "compact".equals(engine)
+                ? new TkCompactSerializer(codecs, store.getIfAvailable(), storeThreshold)
+                : new TkJdkSerializer();
+    return versioned
+        ? versionedSerializer(format, unversionedFormat, engines)
+        : engines.apply(format);
+  }
+
+  /**
+   * Reads both formats and writes {@code format}, so it may change node by node. Tokens without
+   * version header are read as {@code unversionedFormat}.
+   */
+  private static TkSerializer versionedSerializer(
+      String format, String unversionedFormat, Function<String, TkSerializer> engines) {
+    final String other = "compact".equals(format) ? "jdk" : "compact";
+    return new TkVersionedSerializerBuilder()
+        .legacy(engines.apply(unversionedFormat))
+        .add(engineId(other), engines.apply(other))
+        .add(engineId(format), engines.apply(format))
+        .build();
+  }
+
+  private static int engineId(String format) {
+    return "compact".equals(format) ? TkVersionedSerializer.COMPACT : TkVersionedSerializer.JDK;
+  }
+
+  /** Session serializer, possibly compressed, to be encrypted or signed. */
+  @Bean
+  @Qualifier("plain")
+  TkSerializer plainSerializer(
+      @Value("${tksession.compression.enabled:false}") boolean compression,
+      @Value("${tksession.compression.threshold:256}") int compressionThreshold,
+      @Value("${tksession.compression.dictionaries:}") String[] dictionaries,
+      ResourceLoader resourceLoader,
+      @Qualifier("session") TkSerializer sessionSerializer)
+      throws IOException {
+    return compression
+        ? new TkCompressingSerializer(
+            sessionSerializer, compressionThreshold, loadDictionaries(resourceLoader, dictionaries))
+        : sessionSerializer;
+  }
+
+  @Bean
+  @ConditionalOnProperty(name = "tksession.mode", havingValue = "aes", matchIfMissing = true)
+  TkAesSerializer tkAesSerializer(
+      @Value("${tksession.secret:}") String secret,
+      @Value("${tksession.secrets:}") String[] secrets,
+      @Value("${tksession.secret-file:}") String secretFile,
+      @Value("${tksession.nonce:counter}") String nonce,
+      @Value("${tksession.cipher:aes-gcm}") String cipher,
+      @Value("${tksession.cipher-provider:}") String cipherProvider,
+      @Qualifier("plain") TkSerializer plainSerializer,
+      ObjectProvider<TkSessionCache> tkSessionCache)
+      throws IOException {
+    final TkCipherSuite suite =
+        TkCipherSuite.forName(cipher, cipherProvider.isEmpty() ? null : cipherProvider);
+    return new TkAesSerializer(
+        keyRing(secret, secrets, secretFile, nonce, suite),
+        plainSerializer,
+        tkSessionCache.getIfAvailable());
+  }
+
+  /** Signed only, for sessions holding nothing confidential. The last secret signs. */
+  @Bean
+  @ConditionalOnProperty(name = "tksession.mode", havingValue = "hmac")
+  TkHmacSerializer tkHmacSerializer(
+      @Value("${tksession.secret:}") String secret,
+      @Value("${tksession.secrets:}") String[] secrets,
+      @Value("${tksession.secret-file:}") String secretFile,
+      @Qualifier("plain") TkSerializer plainSerializer)
+      throws IOException {
+    final List<String> all = new ArrayList<>();
+    if (!secret.isEmpty()) {
+      all.add(secret);
+    }
+    all.addAll(Arrays.asList(secrets));
+    if (!secretFile.isEmpty()) {
+      all.add(TkSecretWatcher.readSecret(Paths.get(secretFile)));
+    }
+    return new TkHmacSerializer(all, plainSerializer);
+  }
+
+  @Bean
+  @ConditionalOnProperty("tksession.cache.size")
+  TkSessionCache tkSessionCache(@Value("${tksession.cache.size}") int size) {
+    return new TkSessionCache(size);
   }
 
   @Bean
   TkBase64Serializer tkBase64Serializer(
-      @Value("${tksession.secret}") String secret,
-      @Qualifier("session") TkSerializer sessionSerializer) {
-    return new TkBase64Serializer(new TkAesSerializer(secret, sessionSerializer));
+      @Value("${tksession.base64.url-safe:false}") boolean urlSafe,
+      ObjectProvider<TkAesSerializer> tkAesSerializer,
+      ObjectProvider<TkHmacSerializer> tkHmacSerializer,
+      ObjectProvider<TkSessionCache> tkSessionCache) {
+    final TkSerializer aes = tkAesSerializer.getIfAvailable();
+    return new TkBase64Serializer(
+        aes == null ? tkHmacSerializer.getObject() : aes, urlSafe, tkSessionCache.getIfAvailable());
+  }
+
+  @Bean
+  @ConditionalOnExpression("'${tksession.secret-file:}' != '' && '${tksession.mode:aes}' == 'aes'")
+  TkSecretWatcher tkSecretWatcher(
+      @Value("${tksession.secret-file}") String secretFile, TkAesSerializer tkAesSerializer)
+      throws IOException {
+    return TkSecretWatcher.watch(Paths.get(secretFile), tkAesSerializer);
+  }
+
+  /**
+   * The content of {@code tksession.secret-file}, or else the last of {@code tksession.secrets},
+   * encrypts. A plain {@code tksession.secret} is kept to read tokens written before key ids, and
+   * still encrypts when there are no other secrets (always with AES-GCM, as before cipher suites).
+   */
+  private static TkKeyRing keyRing(
+      String secret, String[] secrets, String secretFile, String nonce, TkCipherSuite suite)
+      throws IOException {
+    final TkKeyRingBuilder keys =
+        new TkKeyRingBuilder()
+            .suite(suite)
+            .nonces(
+                "random".equals(nonce)
+                    ? TkNonceGenerator.secureRandom()
+                    : TkNonceGenerator.counter());
+    for (String each : secrets) {
+      keys.add(each);
+    }
+    if (!secretFile.isEmpty()) {
+      keys.add(TkSecretWatcher.readSecret(Paths.get(secretFile)));
+    }
+    if (!secret.isEmpty()) {
+      keys.legacy(secret);
+    }
+    return keys.build();
+  }
+
+  /** Each entry is {@code id:location}, the last one being used for compression. */
+  private static List<TkCompressionDictionary> loadDictionaries(
+      ResourceLoader resourceLoader, String[] entries) throws IOException {
+    final List<TkCompressionDictionary> result = new ArrayList<>();
+    for (String entry : entries) {
+      final int separator = entry.indexOf(':');
+      final int id = Integer.parseInt(entry.substring(0, separator).trim());
+      final Resource resource = resourceLoader.getResource(entry.substring(separator + 1).trim());
+      try (InputStream input = resource.getInputStream()) {
+        result.add(new TkCompressionDictionary(id, StreamUtils.copyToByteArray(input)));
+      }
+    }
+    return result;
+  }
+
+  /** {@code tksession.transport} lists {@code header} and/or {@code cookie}, by precedence. */
+  @Bean
+  TkTransport tkTransport(
+      @Value("${tksession.transport:header}") String[] transports,
+      @Value("${tksession.header:X-SESSION}") String header,
+      @Value("${tksession.chunking.size:0}") int chunkSize,
+      @Value("${tksession.chunking.max-chunks:8}") int maxChunks,
+      @Value("${tksession.cookie.name:TKSESSION}") String cookieName,
+      @Value("${tksession.cookie.path:/}") String cookiePath,
+      @Value("${tksession.cookie.domain:}") String cookieDomain,
+      @Value("${tksession.cookie.secure:true}") boolean cookieSecure,
+      @Value("${tksession.cookie.http-only:true}") boolean cookieHttpOnly,
+      @Value("${tksession.cookie.same-site:Lax}") String cookieSameSite,
+      @Value("${tksession.cookie.chunk-size:3800}") int cookieChunkSize,
+      @Value("${tksession.cookie.max-chunks:8}") int cookieMaxChunks) {
+    final List<TkTransport> result = new ArrayList<>();
+    for (String each : transports) {
+      if ("cookie".equals(each.trim())) {
+        result.add(
+            new TkCookieTransportBuilder()
+                .name(cookieName)
+                .path(cookiePath)
+                .domain(cookieDomain.isEmpty() ? null : cookieDomain)
+                .secure(cookieSecure)
+                .httpOnly(cookieHttpOnly)
+                .sameSite(cookieSameSite.isEmpty() ? null : cookieSameSite)
+                .chunks(cookieChunkSize, cookieMaxChunks)
+                .build());
+      } else {
+        result.add(
+            chunkSize > 0
+                ? new TkHeaderTransport(header, chunkSize, maxChunks)
+                : new TkHeaderTransport(header));
+      }
+    }
+    return result.size() == 1
+        ? result.get(0)
+        : TkTransport.firstOf(result.toArray(new TkTransport[0]));
+  }
+
+  @Bean
+  @ConditionalOnProperty(name = "tksession.guard.enabled", matchIfMissing = true)
+  TkTokenGuard tkTokenGuard(
+      @Value("${tksession.guard.min-length:" + TkTokenGuard.DEFAULT_MIN_LENGTH + "}") int minLength,
+      @Value("${tksession.guard.max-length:" + TkTokenGuard.DEFAULT_MAX_LENGTH + "}") int maxLength) {
+    return new TkTokenGuard(minLength, maxLength);
   }
 
   @Bean
@@ -72,16 +349,20 @@ public class TkSessionAutoConfiguration {
       SessionListenerNotifier sessionListenerNotifier,
       ServerProperties serverProperties,
       SessionProperties sessionProperties,
-      @Value("${tksession.header:X-SESSION}") String header,
-      TkBase64Serializer tkBase64Serializer) {
+      @Value("${tksession.refresh:0}") String refresh,
+      TkTransport tkTransport,
+      TkBase64Serializer tkBase64Serializer,
+      ObjectProvider<TkTokenGuard> tkTokenGuard) {
 
     final FilterRegistrationBean<TkSessionFilter> bean =
         new FilterRegistrationBean<>(
             new TkSessionFilter(
                 sessionListenerNotifier,
                 serverProperties.getServlet().getSession().getTimeout(),
-                header,
-                tkBase64Serializer));
+                tkTransport,
+                tkBase64Serializer,
+                DurationStyle.detectAndParse(refresh, ChronoUnit.SECONDS),
+                tkTokenGuard.getIfAvailable()));
     bean.setName("tkSessionFilter");
     bean.setOrder(sessionProperties.getServlet().getFilterOrder());
     return bean;
@@ -0,0 +1,34 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession;
+
+import java.util.Map;
+
+/**
+ * Attribute map that still knows the encoded form of the values restored from a token.
+ *
+ * @author erdanielli
+ * @see Session#getEncodedAttribute(String)
+ */
+public interface EncodedAttributes {
+
+  /** @return the encoded form of an attribute never changed since restored, or null */
+  Object encoded(String name);
+
+  /**
+   * @return an independent map with the same attributes, sharing only encoded and immutable values
+   *     with this one, or null when some value is mutable
+   */
+  Map<String, Object> copy();
+}
@@ -0,0 +1,65 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Tells values that can't change once read, so reading them doesn't make an attribute dirty.
+ *
+ * @author erdanielli
+ */
+public final class Immutables {
+  private static final Set<Class<?>> TYPES =
+      new HashSet<>(
+          Arrays.asList(
+              String.class,
+              Boolean.class,
+              Byte.class,
+              Short.class,
+              Character.class,
+              Integer.class,
+              Long.class,
+              Float.class,
+              Double.class,
+              BigInteger.class,
+              BigDecimal.class,
+              UUID.class,
+              Instant.class,
+              Duration.class,
+              LocalDate.class,
+              LocalTime.class,
+              LocalDateTime.class,
+              OffsetDateTime.class,
+              ZonedDateTime.class));
+
+  /** @return whether {@code value} is null, an enum constant or of a well-known immutable type */
+  public static boolean isImmutable(Object value) {
+    return value == null || value instanceof Enum || TYPES.contains(value.getClass());
+  }
+
+  private Immutables() {}
+}
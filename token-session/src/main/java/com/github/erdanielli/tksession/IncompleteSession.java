@@ -64,6 +64,17 @@ abstract class IncompleteSession extends Session {
     return Collections.enumeration(attributes.keySet());
   }
 
+  final Map<String, Object> attributeMap() {
+    return attributes;
+  }
+
+  @Override
+  public final Object getEncodedAttribute(String name) {
+    return attributes instanceof EncodedAttributes
+        ? ((EncodedAttributes) attributes).encoded(name)
+        : null;
+  }
+
   @Override
   public final void setAttribute(String name, Object value) {
     if (value == null) {
@@ -44,6 +44,11 @@ final class InvalidatedSession extends SessionWrapper {
     throw invalidatedException();
   }
 
+  @Override
+  public Object getEncodedAttribute(String name) {
+    throw invalidatedException();
+  }
+
   @Override
   public void setAttribute(String name, Object value) {
     throw invalidatedException();
@@ -27,10 +27,54 @@ public final class RestoredTokenSession extends IncompleteSession {
       long lastAccessedTime,
       int maxInactiveTimeout,
       Map<String, Object> attributes) {
-    super(uuid, creationTime, maxInactiveTimeout, new HashMap<>(attributes));
+    this(uuid, creationTime, lastAccessedTime, maxInactiveTimeout, attributes, true);
+  }
+
+  private RestoredTokenSession(
+      UUID uuid,
+      long creationTime,
+      long lastAccessedTime,
+      int maxInactiveTimeout,
+      Map<String, Object> attributes,
+      boolean copy) {
+    super(uuid, creationTime, maxInactiveTimeout, copy ? new HashMap<>(attributes) : attributes);
     this.lastAccessedTime = lastAccessedTime;
   }
 
+  /**
+   * Same as the constructor, but using {@code attributes} as is instead of copying them. The map
+   * must be mutable and not shared.
+   */
+  public static RestoredTokenSession adopt(
+      UUID uuid,
+      long creationTime,
+      long lastAccessedTime,
+      int maxInactiveTimeout,
+      Map<String, Object> attributes) {
+    return new RestoredTokenSession(
+        uuid, creationTime, lastAccessedTime, maxInactiveTimeout, attributes, false);
+  }
+
+  /**
+   * @return an independent copy of this session, sharing only immutable (or still encoded)
+   *     attribute values with it, or null when some value is mutable
+   */
+  public RestoredTokenSession copy() {
+    final Map<String, Object> attributes = attributeMap();
+    final Map<String, Object> copy;
+    if (attributes instanceof EncodedAttributes) {
+      copy = ((EncodedAttributes) attributes).copy();
+    } else if (attributes.values().stream().allMatch(Immutables::isImmutable)) {
+      copy = new HashMap<>(attributes);
+    } else {
+      copy = null;
+    }
+    return copy == null
+        ? null
+        : new RestoredTokenSession(
+            getUUID(), getCreationTime(), lastAccessedTime, getMaxInactiveInterval(), copy, false);
+  }
+
   @Override
   public long getLastAccessedTime() {
     return lastAccessedTime;
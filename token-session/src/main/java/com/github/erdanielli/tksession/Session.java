@@ -36,6 +36,16 @@ public abstract class Session implements HttpSession {
             .collect(Collectors.toMap(k -> k, this::getAttribute)));
   }
 
+  /**
+   * Opaque encoded form of an attribute restored from a token and neither replaced nor read as a
+   * mutable value since, so the serializer that restored it can write it back verbatim.
+   *
+   * @return null unless known
+   */
+  public Object getEncodedAttribute(String name) {
+    return null;
+  }
+
   public boolean expired() {
     if (getMaxInactiveInterval() == 0) {
       return false;
@@ -66,6 +66,11 @@ public abstract class SessionWrapper extends Session {
     return original.getAttributeNames();
   }
 
+  @Override
+  public Object getEncodedAttribute(String name) {
+    return original.getEncodedAttribute(name);
+  }
+
   @Override
   @SuppressWarnings("squid:S2441")
   public void setAttribute(String name, Object value) {
@@ -83,6 +83,11 @@ public final class SpecCompleteSession extends Session {
     return incomplete.getAttributeNames();
   }
 
+  @Override
+  public Object getEncodedAttribute(String name) {
+    return incomplete.getEncodedAttribute(name);
+  }
+
   @Override
   @SuppressWarnings("squid:S2441")
   public void setAttribute(String name, Object value) {
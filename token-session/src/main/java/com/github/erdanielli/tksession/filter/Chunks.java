@@ -0,0 +1,99 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.filter;
+
+import com.github.erdanielli.tksession.serializer.InvalidTokenException;
+
+import java.util.function.IntFunction;
+
+/**
+ * Splitting and joining of tokens too long for a single header or cookie, with strict bounds on
+ * both their count and length.
+ *
+ * @author erdanielli
+ */
+final class Chunks {
+  private final int size;
+  private final int max;
+
+  /** Never splits tokens. */
+  Chunks() {
+    this(Integer.MAX_VALUE, 1);
+  }
+
+  Chunks(int size, int max) {
+    if (size < 1 || max < 1) {
+      throw new IllegalArgumentException("Chunk size and count must be positive");
+    }
+    this.size = size;
+    this.max = max;
+  }
+
+  boolean enabled() {
+    return max > 1;
+  }
+
+  int max() {
+    return max;
+  }
+
+  /** @return how many chunks {@code token} takes, 1 meaning it isn't split */
+  int count(String token) {
+    final int count = token.length() <= size ? 1 : (token.length() - 1) / size + 1;
+    if (count > max) {
+      throw new IllegalStateException(
+          "Token of " + token.length() + " characters exceeds " + max + " chunks of " + size);
+    }
+    return count;
+  }
+
+  String get(String token, int index) {
+    return token.substring(index * size, Math.min(token.length(), (index + 1) * size));
+  }
+
+  /**
+   * @param chunks the chunk at each index, null past the last one
+   * @return the joined chunks, or null if there is none
+   * @throws InvalidTokenException if there are too many chunks, or characters
+   */
+  String join(IntFunction<String> chunks) {
+    final String first = chunks.apply(0);
+    if (first == null) {
+      return null;
+    }
+    final String[] all = new String[max];
+    all[0] = first;
+    int count = 1;
+    long length = first.length();
+    for (String each; count < max && (each = chunks.apply(count)) != null; ) {
+      all[count++] = each;
+      length += each.length();
+    }
+    if (count == max && chunks.apply(count) != null) {
+      throw invalid("Token split in more than " + max + " chunks");
+    }
+    if (length > (long) size * max) {
+      throw invalid("Token longer than " + max + " chunks of " + size);
+    }
+    final StringBuilder result = new StringBuilder((int) length);
+    for (int i = 0; i < count; i++) {
+      result.append(all[i]);
+    }
+    return result.toString();
+  }
+
+  private static InvalidTokenException invalid(String message) {
+    return new InvalidTokenException(new IllegalArgumentException(message));
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.filter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Tries a list of transports in order, remembering in a request attribute which one the token came
+ * from.
+ *
+ * @author erdanielli
+ */
+final class PrecedenceTransport implements TkTransport {
+  private static final String USED = PrecedenceTransport.class.getName() + ".USED";
+  private final TkTransport[] transports;
+
+  PrecedenceTransport(TkTransport[] transports) {
+    if (transports.length == 0) {
+      throw new IllegalArgumentException("No transport");
+    }
+    this.transports = transports.clone();
+  }
+
+  @Override
+  public String read(HttpServletRequest request) {
+    for (TkTransport each : transports) {
+      final String token = each.read(request);
+      if (token != null) {
+        request.setAttribute(USED, each);
+        return token;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public void write(HttpServletRequest request, HttpServletResponse response, String token) {
+    final Object used = request.getAttribute(USED);
+    if (used instanceof TkTransport) {
+      ((TkTransport) used).write(request, response, token);
+    } else {
+      for (TkTransport each : transports) {
+        each.write(request, response, token);
+      }
+    }
+  }
+
+  @Override
+  public void discard(HttpServletRequest request, HttpServletResponse response) {
+    for (TkTransport each : transports) {
+      each.discard(request, response);
+    }
+  }
+}
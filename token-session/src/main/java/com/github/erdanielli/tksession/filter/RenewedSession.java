@@ -13,20 +13,69 @@
  */
 package com.github.erdanielli.tksession.filter;
 
+import com.github.erdanielli.tksession.Immutables;
 import com.github.erdanielli.tksession.Session;
 import com.github.erdanielli.tksession.SessionWrapper;
 
-/** @author erdanielli */
+import java.time.Duration;
+import java.util.Collections;
+
+/**
+ * Restored session accessed again. The last accessed time only moves once older than the refresh
+ * granularity; until then, and as long as nothing else changes, the incoming token is still valid
+ * for the session.
+ *
+ * @author erdanielli
+ */
 final class RenewedSession extends SessionWrapper {
   private final long lastAccessedTime;
+  private boolean changed;
 
-  RenewedSession(Session session) {
+  RenewedSession(Session session, Duration refresh) {
     super(session);
-    this.lastAccessedTime = System.currentTimeMillis();
+    final long now = System.currentTimeMillis();
+    if (now - session.getLastAccessedTime() < refresh.toMillis()) {
+      this.lastAccessedTime = session.getLastAccessedTime();
+    } else {
+      this.lastAccessedTime = now;
+      this.changed = true;
+    }
+  }
+
+  /** @return whether the session differs from the restored one */
+  boolean isChanged() {
+    return changed;
   }
 
   @Override
   public long getLastAccessedTime() {
     return lastAccessedTime;
   }
+
+  @Override
+  public void setMaxInactiveInterval(int interval) {
+    final int previous = getMaxInactiveInterval();
+    super.setMaxInactiveInterval(interval);
+    changed |= previous != getMaxInactiveInterval();
+  }
+
+  /** Mutable values may be changed by the caller, so reading them counts as a change. */
+  @Override
+  public Object getAttribute(String name) {
+    final Object value = super.getAttribute(name);
+    changed |= !Immutables.isImmutable(value);
+    return value;
+  }
+
+  @Override
+  public void setAttribute(String name, Object value) {
+    super.setAttribute(name, value);
+    changed = true;
+  }
+
+  @Override
+  public void removeAttribute(String name) {
+    changed |= Collections.list(getAttributeNames()).contains(name);
+    super.removeAttribute(name);
+  }
 }
@@ -0,0 +1,116 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.filter;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Carries tokens in a cookie, so that browsers send them back on their own. Tokens longer than the
+ * chunk size are split over numbered cookies ({@code TKSESSION-0}, {@code TKSESSION-1}...), and
+ * cookies left over from previous tokens are expired.
+ *
+ * <p>Cookie values are safest with {@link
+ * com.github.erdanielli.tksession.serializer.TkBase64Serializer URL safe} tokens.
+ *
+ * @author erdanielli
+ * @see TkCookieTransportBuilder
+ */
+public final class TkCookieTransport implements TkTransport {
+  private final String name;
+  private final String attributes;
+  private final Chunks chunks;
+
+  TkCookieTransport(String name, String attributes, Chunks chunks) {
+    this.name = name;
+    this.attributes = attributes;
+    this.chunks = chunks;
+  }
+
+  @Override
+  public String read(HttpServletRequest request) {
+    final Map<String, String> cookies = cookies(request);
+    final String token = cookies.get(name);
+    if (token != null || !chunks.enabled()) {
+      return token;
+    }
+    return chunks.join(i -> cookies.get(chunk(i)));
+  }
+
+  /** @throws IllegalStateException if the token doesn't fit in the maximum number of chunks */
+  @Override
+  public void write(HttpServletRequest request, HttpServletResponse response, String token) {
+    final Map<String, String> previous = cookies(request);
+    final int count = chunks.count(token);
+    if (count == 1) {
+      setCookie(response, name, token);
+      previous.remove(name);
+    } else {
+      for (int i = 0; i < count; i++) {
+        setCookie(response, chunk(i), chunks.get(token, i));
+        previous.remove(chunk(i));
+      }
+    }
+    previous.keySet().forEach(each -> expireCookie(response, each));
+  }
+
+  @Override
+  public void discard(HttpServletRequest request, HttpServletResponse response) {
+    cookies(request).keySet().forEach(each -> expireCookie(response, each));
+  }
+
+  /** @return the value of the cookies holding (chunks of) the token */
+  private Map<String, String> cookies(HttpServletRequest request) {
+    final Map<String, String> result = new HashMap<>();
+    final Cookie[] cookies = request.getCookies();
+    if (cookies != null) {
+      for (Cookie each : cookies) {
+        if (each.getName().equals(name) || isChunk(each.getName())) {
+          result.put(each.getName(), each.getValue());
+        }
+      }
+    }
+    return result;
+  }
+
+  private boolean isChunk(String cookie) {
+    if (!chunks.enabled()
+        || cookie.length() <= name.length() + 1
+        || !cookie.startsWith(name)
+        || cookie.charAt(name.length()) != '-') {
+      return false;
+    }
+    for (int i = name.length() + 1; i < cookie.length(); i++) {
+      if (!Character.isDigit(cookie.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void setCookie(HttpServletResponse response, String cookie, String value) {
+    response.addHeader("Set-Cookie", cookie + "=" + value + attributes);
+  }
+
+  private void expireCookie(HttpServletResponse response, String cookie) {
+    response.addHeader("Set-Cookie", cookie + "=; Max-Age=0" + attributes);
+  }
+
+  private String chunk(int index) {
+    return name + "-" + index;
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.filter;
+
+/**
+ * Defaults to a {@code TKSESSION} cookie for the whole site, {@code Secure}, {@code HttpOnly} and
+ * {@code SameSite=Lax}, split in chunks of 3800 characters (up to 8 of them).
+ *
+ * @author erdanielli
+ */
+public final class TkCookieTransportBuilder {
+  private String name = "TKSESSION";
+  private String path = "/";
+  private String domain;
+  private boolean secure = true;
+  private boolean httpOnly = true;
+  private String sameSite = "Lax";
+  private int chunkSize = 3800;
+  private int maxChunks = 8;
+
+  public TkCookieTransportBuilder name(String name) {
+    this.name = name;
+    return this;
+  }
+
+  public TkCookieTransportBuilder path(String path) {
+    this.path = path;
+    return this;
+  }
+
+  /** Not set by default, restricting the cookie to the exact host. */
+  public TkCookieTransportBuilder domain(String domain) {
+    this.domain = domain;
+    return this;
+  }
+
+  public TkCookieTransportBuilder secure(boolean secure) {
+    this.secure = secure;
+    return this;
+  }
+
+  public TkCookieTransportBuilder httpOnly(boolean httpOnly) {
+    this.httpOnly = httpOnly;
+    return this;
+  }
+
+  /** One of {@code Strict}, {@code Lax} or {@code None} (which requires secure cookies), or null. */
+  public TkCookieTransportBuilder sameSite(String sameSite) {
+    this.sameSite = sameSite;
+    return this;
+  }
+
+  /**
+   * @param size length above which tokens are split
+   * @param max how many cookies a token may be split over, at most
+   */
+  public TkCookieTransportBuilder chunks(int size, int max) {
+    this.chunkSize = size;
+    this.maxChunks = max;
+    return this;
+  }
+
+  /** @throws IllegalArgumentException if the settings are invalid */
+  public TkCookieTransport build() {
+    if (name == null || name.isEmpty() || name.indexOf('=') >= 0 || name.indexOf(';') >= 0) {
+      throw new IllegalArgumentException("Invalid cookie name '" + name + "'");
+    }
+    if ("None".equalsIgnoreCase(sameSite) && !secure) {
+      throw new IllegalArgumentException("SameSite=None requires secure cookies");
+    }
+    final StringBuilder attributes = new StringBuilder();
+    if (path != null) {
+      attributes.append("; Path=").append(path);
+    }
+    if (domain != null) {
+      attributes.append("; Domain=").append(domain);
+    }
+    if (secure) {
+      attributes.append("; Secure");
+    }
+    if (httpOnly) {
+      attributes.append("; HttpOnly");
+    }
+    if (sameSite != null) {
+      attributes.append("; SameSite=").append(sameSite);
+    }
+    return new TkCookieTransport(name, attributes.toString(), new Chunks(chunkSize, maxChunks));
+  }
+}
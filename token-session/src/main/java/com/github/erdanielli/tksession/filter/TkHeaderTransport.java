@@ -0,0 +1,72 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.filter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Carries tokens in a header. Tokens longer than the chunk size are split over numbered headers
+ * instead ({@code X-SESSION-0}, {@code X-SESSION-1}...), which clients must send back as received.
+ *
+ * @author erdanielli
+ */
+public final class TkHeaderTransport implements TkTransport {
+  private final String header;
+  private final Chunks chunks;
+
+  /** Never splits tokens. */
+  public TkHeaderTransport(String header) {
+    this(header, new Chunks());
+  }
+
+  /**
+   * @param chunkSize length above which tokens are split
+   * @param maxChunks how many headers a token may be split over, at most
+   */
+  public TkHeaderTransport(String header, int chunkSize, int maxChunks) {
+    this(header, new Chunks(chunkSize, maxChunks));
+  }
+
+  private TkHeaderTransport(String header, Chunks chunks) {
+    this.header = header;
+    this.chunks = chunks;
+  }
+
+  @Override
+  public String read(HttpServletRequest request) {
+    final String token = request.getHeader(header);
+    if (token != null || !chunks.enabled()) {
+      return token;
+    }
+    return chunks.join(i -> request.getHeader(chunk(i)));
+  }
+
+  /** @throws IllegalStateException if the token doesn't fit in the maximum number of chunks */
+  @Override
+  public void write(HttpServletRequest request, HttpServletResponse response, String token) {
+    final int count = chunks.count(token);
+    if (count == 1) {
+      response.setHeader(header, token);
+      return;
+    }
+    for (int i = 0; i < count; i++) {
+      response.setHeader(chunk(i), chunks.get(token, i));
+    }
+  }
+
+  private String chunk(int index) {
+    return header + "-" + index;
+  }
+}
@@ -53,4 +53,7 @@ abstract class TkRequest extends HttpServletRequestWrapper {
 
   abstract SpecCompleteSession getSession(
       boolean create, SessionListenerNotifier notifier, int seconds);
+
+  /** @return the incoming token, if it still represents the current session */
+  abstract String unchangedToken();
 }
@@ -26,42 +26,56 @@ import java.time.Duration;
 final class TkRequestWithHeader extends TkRequest {
   private final String token;
   private final TkBase64Serializer serializer;
+  private final Duration refresh;
   private SpecCompleteSession session;
   private Session restoredTkSession;
+  private RenewedSession renewedSession;
+  private boolean expired;
 
   TkRequestWithHeader(
       String token,
       TkBase64Serializer serializer,
       Duration ttl,
+      Duration refresh,
       SessionListenerNotifier notifier,
       HttpServletRequest request) {
     super(ttl, notifier, request);
     this.token = token;
     this.serializer = serializer;
+    this.refresh = refresh;
   }
 
   @Override
   SpecCompleteSession getSession(boolean create, SessionListenerNotifier notifier, int seconds) {
-    if (restoredTkSession == null) {
-      restoredTkSession = serializer.readToken(token);
-      if (restoredTkSession.expired()) {
-        new SpecCompleteSession(getServletContext(), notifier.observe(restoredTkSession))
-            .invalidate();
+    if (restoredTkSession == null && !expired) {
+      if (!notifier.notifiesDestruction() && serializer.expired(token)) {
+        expired = true;
+      } else {
+        restoredTkSession = serializer.readToken(token);
+        expired = restoredTkSession.expired();
+        if (expired) {
+          new SpecCompleteSession(getServletContext(), notifier.observe(restoredTkSession))
+              .invalidate();
+        }
       }
     }
-    if (!create && restoredTkSession.expired()) {
+    if (!create && expired) {
       return session;
     }
     if (session == null) {
-      if (restoredTkSession.expired()) {
+      if (expired) {
         session = new SpecCompleteSession(getServletContext(), notifier.observe(new NewSession()));
         session.setMaxInactiveInterval(seconds);
       } else {
-        session =
-            new SpecCompleteSession(
-                getServletContext(), notifier.observe(new RenewedSession(restoredTkSession)));
+        renewedSession = new RenewedSession(restoredTkSession, refresh);
+        session = new SpecCompleteSession(getServletContext(), notifier.observe(renewedSession));
       }
     }
     return session;
   }
+
+  @Override
+  String unchangedToken() {
+    return renewedSession != null && !renewedSession.isChanged() ? token : null;
+  }
 }
@@ -40,4 +40,9 @@ final class TkRequestWithoutHeader extends TkRequest {
     }
     return session;
   }
+
+  @Override
+  String unchangedToken() {
+    return null;
+  }
 }
@@ -14,6 +14,7 @@
 package com.github.erdanielli.tksession.filter;
 
 import com.github.erdanielli.tksession.serializer.TkBase64Serializer;
+import com.github.erdanielli.tksession.serializer.TkTokenGuard;
 
 import javax.servlet.http.HttpServletResponse;
 
@@ -21,26 +22,38 @@ import static java.util.Optional.ofNullable;
 
 /** @author erdanielli */
 final class TkResponse extends OnCommittedResponseWrapper {
-  private final String header;
+  private final TkTransport transport;
   private final TkBase64Serializer serializer;
   private final TkRequest request;
+  private final TkTokenGuard guard;
 
   TkResponse(
-      String header,
+      TkTransport transport,
       TkBase64Serializer serializer,
       TkRequest request,
-      HttpServletResponse response) {
+      HttpServletResponse response,
+      TkTokenGuard guard) {
     super(response);
-    this.header = header;
+    this.transport = transport;
     this.serializer = serializer;
     this.request = request;
+    this.guard = guard;
   }
 
   @Override
   protected void onResponseCommitted() {
-    ofNullable(request.getSession(false))
-        .filter(s -> !s.expired())
-        .map(serializer::writeToken)
-        .ifPresent(tk -> setHeader(header, tk));
+    final String token =
+        ofNullable(request.getSession(false))
+            .filter(s -> !s.expired())
+            .map(s -> ofNullable(request.unchangedToken()).orElseGet(() -> serializer.writeToken(s)))
+            .orElse(null);
+    if (token == null) {
+      transport.discard(request, this);
+    } else {
+      if (guard != null) {
+        guard.checkWritable(token);
+      }
+      transport.write(request, this, token);
+    }
   }
 }
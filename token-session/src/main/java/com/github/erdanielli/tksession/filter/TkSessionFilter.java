@@ -16,6 +16,7 @@ package com.github.erdanielli.tksession.filter;
 import com.github.erdanielli.tksession.listener.SessionListenerNotifier;
 import com.github.erdanielli.tksession.serializer.InvalidTokenException;
 import com.github.erdanielli.tksession.serializer.TkBase64Serializer;
+import com.github.erdanielli.tksession.serializer.TkTokenGuard;
 
 import javax.servlet.*;
 import javax.servlet.http.HttpServletRequest;
@@ -27,18 +28,64 @@ import java.time.Duration;
 public final class TkSessionFilter implements Filter {
   private final SessionListenerNotifier notifier;
   private final Duration ttl;
-  private final String header;
+  private final TkTransport transport;
   private final TkBase64Serializer serializer;
+  private final Duration refresh;
+  private final TkTokenGuard guard;
 
   public TkSessionFilter(
       SessionListenerNotifier notifier,
       Duration ttl,
       String header,
       TkBase64Serializer serializer) {
+    this(notifier, ttl, header, serializer, Duration.ZERO);
+  }
+
+  /**
+   * @param refresh granularity of the last accessed time. Responses echo the incoming token when
+   *     the session didn't change and was last accessed more recently than that, so sessions may
+   *     expire up to {@code refresh} earlier.
+   */
+  public TkSessionFilter(
+      SessionListenerNotifier notifier,
+      Duration ttl,
+      String header,
+      TkBase64Serializer serializer,
+      Duration refresh) {
+    this(notifier, ttl, new TkHeaderTransport(header), serializer, refresh);
+  }
+
+  /**
+   * @param transport how tokens travel to and from clients
+   * @param refresh as in {@link #TkSessionFilter(SessionListenerNotifier, Duration, String,
+   *     TkBase64Serializer, Duration)}
+   */
+  public TkSessionFilter(
+      SessionListenerNotifier notifier,
+      Duration ttl,
+      TkTransport transport,
+      TkBase64Serializer serializer,
+      Duration refresh) {
+    this(notifier, ttl, transport, serializer, refresh, null);
+  }
+
+  /**
+   * @param guard checks tokens before the request goes on, answering 400 to those it rejects, and
+   *     keeps tokens it would reject from being written (if any)
+   */
+  public TkSessionFilter(
+      SessionListenerNotifier notifier,
+      Duration ttl,
+      TkTransport transport,
+      TkBase64Serializer serializer,
+      Duration refresh,
+      TkTokenGuard guard) {
     this.notifier = notifier;
     this.ttl = ttl;
-    this.header = header;
+    this.transport = transport;
     this.serializer = serializer;
+    this.refresh = refresh;
+    this.guard = guard;
   }
 
   @Override
@@ -46,13 +93,23 @@ public final class TkSessionFilter implements Filter {
       throws IOException, ServletException {
     final HttpServletRequest httpReq = (HttpServletRequest) request;
     final HttpServletResponse httpResp = (HttpServletResponse) response;
-    final String token = httpReq.getHeader(header);
+    final String token;
+    try {
+      token = transport.read(httpReq);
+      if (token != null && guard != null) {
+        guard.check(token);
+      }
+    } catch (InvalidTokenException e) {
+      transport.discard(httpReq, httpResp);
+      httpResp.sendError(400, "INVALID_SESSION_TOKEN");
+      return;
+    }
     final TkRequest tkRequest =
         token == null
             ? new TkRequestWithoutHeader(ttl, notifier, httpReq)
-            : new TkRequestWithHeader(token, serializer, ttl, notifier, httpReq);
+            : new TkRequestWithHeader(token, serializer, ttl, refresh, notifier, httpReq);
 
-    final TkResponse tkResponse = new TkResponse(header, serializer, tkRequest, httpResp);
+    final TkResponse tkResponse = new TkResponse(transport, serializer, tkRequest, httpResp, guard);
     try {
       chain.doFilter(tkRequest, tkResponse);
     } catch (IOException | ServletException e) {
@@ -0,0 +1,49 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.filter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * How tokens travel between clients and {@link TkSessionFilter}.
+ *
+ * @author erdanielli
+ * @see TkHeaderTransport
+ * @see TkCookieTransport
+ */
+public interface TkTransport {
+
+  /**
+   * @return the token sent along the request, or null if absent
+   * @throws com.github.erdanielli.tksession.serializer.InvalidTokenException if malformed
+   */
+  String read(HttpServletRequest request);
+
+  /** Sends the token of the session back to the client. */
+  void write(HttpServletRequest request, HttpServletResponse response, String token);
+
+  /** Called instead of {@link #write} when the request ends without a session. Does nothing. */
+  default void discard(HttpServletRequest request, HttpServletResponse response) {}
+
+  /**
+   * Reads from the first transport the request carries a token in, writing back there (or to all of
+   * them, for new sessions).
+   *
+   * @param transports in order of precedence
+   */
+  static TkTransport firstOf(TkTransport... transports) {
+    return new PrecedenceTransport(transports);
+  }
+}
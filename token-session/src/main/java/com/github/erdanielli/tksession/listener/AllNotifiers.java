@@ -29,6 +29,11 @@ final class AllNotifiers implements SessionListenerNotifier {
         public Session observe(Session session) {
           return new UnobservedSession(session);
         }
+
+        @Override
+        public boolean notifiesDestruction() {
+          return false;
+        }
       };
   private final List<SessionListenerNotifier> notifiers;
 
@@ -43,6 +48,11 @@ final class AllNotifiers implements SessionListenerNotifier {
     this.notifiers = notifiers;
   }
 
+  @Override
+  public boolean notifiesDestruction() {
+    return notifiers.stream().anyMatch(SessionListenerNotifier::notifiesDestruction);
+  }
+
   @Override
   public void sessionCreated(HttpSession s) {
     notifiers.forEach(it -> it.sessionCreated(s));
@@ -32,6 +32,11 @@ final class AttributesNotifier implements SessionListenerNotifier {
     this.listeners = listeners;
   }
 
+  @Override
+  public boolean notifiesDestruction() {
+    return false;
+  }
+
   @Override
   public void attributeAdded(HttpSession s, String attrName, Object value) {
     final HttpSessionBindingEvent event = new HttpSessionBindingEvent(s, attrName, value);
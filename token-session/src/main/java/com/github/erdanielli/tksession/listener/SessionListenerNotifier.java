@@ -24,6 +24,14 @@ public interface SessionListenerNotifier {
     return new ObservedSession(this, session);
   }
 
+  /**
+   * @return whether {@link #sessionDestroyed(HttpSession)} does anything, so that expired sessions
+   *     must still be read from their tokens
+   */
+  default boolean notifiesDestruction() {
+    return true;
+  }
+
   // HttpSessionListener
 
   default void sessionCreated(HttpSession s) {}
@@ -0,0 +1,215 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * AES-SIV (RFC 5297) on top of the JCA AES/CBC and AES/CTR ciphers: the synthetic iv is the
+ * AES-CMAC based S2V of the associated data and the plain text, which the CTR mode then encrypts.
+ * Deterministic, so the same input always yields the same output, and still safe when that
+ * happens.
+ *
+ * <p>Output is the 16 bytes synthetic iv followed by as many bytes as the plain text.
+ *
+ * @author erdanielli
+ */
+final class AesSiv implements TkCipherSuite.Aead {
+  static final int IV_LENGTH = 16;
+  private static final int BLOCK = 16;
+  private static final byte[][] NO_DATA = new byte[0][];
+  private final SecretKeySpec macKey;
+  private final SecretKeySpec ctrKey;
+  private final String provider;
+  /** AES/CBC initialized with the MAC key and a zero iv, which doFinal restores. */
+  private final InstancePool<Cipher> cbcMacs;
+  private final InstancePool<Cipher> ctrs;
+  private final byte[] subkey1;
+  private final byte[] subkey2;
+  /** CMAC of the zero block, where S2V starts. */
+  private final byte[] zero;
+
+  /**
+   * @param key 32, 48 or 64 bytes: the MAC key followed by the CTR key
+   * @param provider JCA provider name, or null for the default one
+   */
+  AesSiv(byte[] key, String provider) {
+    if (key.length != 32 && key.length != 48 && key.length != 64) {
+      throw new IllegalArgumentException("Invalid AES-SIV key length: " + key.length);
+    }
+    final int half = key.length / 2;
+    this.macKey = new SecretKeySpec(key, 0, half, "AES");
+    this.ctrKey = new SecretKeySpec(key, half, half, "AES");
+    this.provider = provider;
+    this.cbcMacs =
+        new InstancePool<>(
+            () -> {
+              final Cipher cipher = newCipher("AES/CBC/NoPadding");
+              try {
+                cipher.init(Cipher.ENCRYPT_MODE, macKey, new IvParameterSpec(new byte[BLOCK]));
+              } catch (GeneralSecurityException e) {
+                throw new IllegalArgumentException("Invalid AES-SIV key", e);
+              }
+              return cipher;
+            });
+    this.ctrs = new InstancePool<>(() -> newCipher("AES/CTR/NoPadding"));
+    final Cipher cbcMac = cbcMacs.acquire();
+    try {
+      subkey1 = dbl(cbcMac.doFinal(new byte[BLOCK]));
+    } catch (GeneralSecurityException e) {
+      throw new IllegalArgumentException("AES-SIV not supported", e);
+    } finally {
+      cbcMacs.release(cbcMac);
+    }
+    subkey2 = dbl(subkey1);
+    zero = cmac(new byte[BLOCK], 0, BLOCK, null);
+  }
+
+  @Override
+  public ByteBuffer encrypt(byte[] plain, int offset, int length, int headroom, byte[] data) {
+    return encrypt(plain, offset, length, headroom, components(data));
+  }
+
+  @Override
+  public byte[] decrypt(byte[] encrypted, int offset, int length, byte[] data) {
+    return decrypt(encrypted, offset, length, components(data));
+  }
+
+  /** Empty associated data is no S2V component at all. */
+  private static byte[][] components(byte[] data) {
+    return data.length == 0 ? NO_DATA : new byte[][] {data};
+  }
+
+  ByteBuffer encrypt(byte[] plain, int offset, int length, int headroom, byte[][] data) {
+    final byte[] result = new byte[headroom + IV_LENGTH + length];
+    final byte[] iv = s2v(data, plain, offset, length);
+    System.arraycopy(iv, 0, result, headroom, IV_LENGTH);
+    ctr(iv, plain, offset, length, result, headroom + IV_LENGTH);
+    return ByteBuffer.wrap(result, headroom, IV_LENGTH + length);
+  }
+
+  byte[] decrypt(byte[] encrypted, int offset, int length, byte[][] data) {
+    if (length < IV_LENGTH) {
+      throw new IllegalArgumentException("AES-SIV input too short");
+    }
+    final byte[] iv = Arrays.copyOfRange(encrypted, offset, offset + IV_LENGTH);
+    final byte[] plain = new byte[length - IV_LENGTH];
+    ctr(iv, encrypted, offset + IV_LENGTH, plain.length, plain, 0);
+    if (!MessageDigest.isEqual(iv, s2v(data, plain, 0, plain.length))) {
+      throw new IllegalArgumentException("AES-SIV decryption failed");
+    }
+    return plain;
+  }
+
+  private byte[] s2v(byte[][] data, byte[] plain, int offset, int length) {
+    byte[] d = zero;
+    for (byte[] each : data) {
+      d = dbl(d);
+      xor(d, 0, cmac(each, 0, each.length, null), BLOCK);
+    }
+    if (length >= BLOCK) {
+      return cmac(plain, offset, length, d);
+    }
+    d = dbl(d);
+    xor(d, 0, plain, offset, length);
+    d[length] ^= (byte) 0x80;
+    return cmac(d, 0, BLOCK, null);
+  }
+
+  /**
+   * CMAC of {@code msg[offset, offset + length)}, after xoring {@code end} (if any) into its last
+   * block size bytes.
+   */
+  private byte[] cmac(byte[] msg, int offset, int length, byte[] end) {
+    final int lastBlock = length == 0 ? 0 : (length - 1) / BLOCK * BLOCK;
+    final int head = (end == null ? lastBlock : Math.min(lastBlock, length - BLOCK)) / BLOCK * BLOCK;
+    final byte[] tail = Arrays.copyOfRange(msg, offset + head, offset + length);
+    if (end != null) {
+      xor(tail, tail.length - BLOCK, end, BLOCK);
+    }
+    final int tailLast = lastBlock - head;
+    final byte[] last = Arrays.copyOfRange(tail, tailLast, tailLast + BLOCK);
+    if (length > 0 && length % BLOCK == 0) {
+      xor(last, 0, subkey1, BLOCK);
+    } else {
+      last[tail.length - tailLast] = (byte) 0x80;
+      xor(last, 0, subkey2, BLOCK);
+    }
+    final Cipher cbcMac = cbcMacs.acquire();
+    try {
+      final byte[] out = new byte[Math.min(Math.max(head, BLOCK), 512)];
+      for (int pos = 0; pos < head; pos += out.length) {
+        cbcMac.update(msg, offset + pos, Math.min(out.length, head - pos), out, 0);
+      }
+      cbcMac.update(tail, 0, tailLast, out, 0);
+      cbcMac.doFinal(last, 0, BLOCK, out, 0);
+      return Arrays.copyOf(out, BLOCK);
+    } catch (GeneralSecurityException e) {
+      throw new IllegalArgumentException("AES-SIV failed", e);
+    } finally {
+      cbcMacs.release(cbcMac);
+    }
+  }
+
+  private void ctr(byte[] iv, byte[] in, int offset, int length, byte[] out, int outOffset) {
+    final byte[] counter = iv.clone();
+    counter[8] &= 0x7F;
+    counter[12] &= 0x7F;
+    final Cipher cipher = ctrs.acquire();
+    try {
+      cipher.init(Cipher.ENCRYPT_MODE, ctrKey, new IvParameterSpec(counter));
+      cipher.doFinal(in, offset, length, out, outOffset);
+    } catch (GeneralSecurityException e) {
+      throw new IllegalArgumentException("AES-SIV failed", e);
+    } finally {
+      ctrs.release(cipher);
+    }
+  }
+
+  private Cipher newCipher(String transformation) {
+    try {
+      return provider == null
+          ? Cipher.getInstance(transformation)
+          : Cipher.getInstance(transformation, provider);
+    } catch (GeneralSecurityException e) {
+      throw new IllegalArgumentException(transformation + " not supported", e);
+    }
+  }
+
+  /** Doubling in GF(2^128). */
+  private static byte[] dbl(byte[] block) {
+    final byte[] result = new byte[BLOCK];
+    for (int i = 0; i < BLOCK - 1; i++) {
+      result[i] = (byte) ((block[i] << 1) | ((block[i + 1] & 0xFF) >>> 7));
+    }
+    result[BLOCK - 1] = (byte) ((block[BLOCK - 1] << 1) ^ ((block[0] >> 7) & 0x87));
+    return result;
+  }
+
+  private static void xor(byte[] dst, int dstOffset, byte[] src, int length) {
+    xor(dst, dstOffset, src, 0, length);
+  }
+
+  private static void xor(byte[] dst, int dstOffset, byte[] src, int srcOffset, int length) {
+    for (int i = 0; i < length; i++) {
+      dst[dstOffset + i] ^= src[srcOffset + i];
+    }
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+import javax.crypto.Cipher;
+import java.security.GeneralSecurityException;
+
+/**
+ * Deterministic AES-SIV with a 512-bit key (AES-256 for both CMAC and CTR), ignoring nonces.
+ *
+ * @author erdanielli
+ */
+final class AesSivCipherSuite implements TkCipherSuite {
+  private final String provider;
+
+  AesSivCipherSuite(String provider) {
+    this.provider = provider;
+  }
+
+  @Override
+  public int id() {
+    return AES_SIV;
+  }
+
+  @Override
+  public String name() {
+    return "AES-SIV";
+  }
+
+  @Override
+  public int keyLength() {
+    return 64;
+  }
+
+  @Override
+  public boolean isAvailable() {
+    try {
+      for (String transformation : new String[] {"AES/CBC/NoPadding", "AES/CTR/NoPadding"}) {
+        if (provider == null) {
+          Cipher.getInstance(transformation);
+        } else {
+          Cipher.getInstance(transformation, provider);
+        }
+      }
+      return true;
+    } catch (GeneralSecurityException e) {
+      return false;
+    }
+  }
+
+  @Override
+  public Aead newAead(byte[] key, TkNonceGenerator nonces) {
+    return new AesSiv(key, provider);
+  }
+
+  @Override
+  public String toString() {
+    return provider == null ? name() : name() + " (" + provider + ")";
+  }
+}
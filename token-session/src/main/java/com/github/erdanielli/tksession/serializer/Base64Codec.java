@@ -0,0 +1,146 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+/**
+ * Base64 straight from/to the header value. Encoding uses either the standard (padded) or the URL
+ * safe (unpadded) alphabet; decoding accepts both, with or without padding, so the encoding can be
+ * switched without invalidating tokens.
+ *
+ * @author erdanielli
+ */
+final class Base64Codec {
+  private static final byte[] STANDARD =
+      "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(ISO_8859_1);
+  private static final byte[] URL_SAFE =
+      "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".getBytes(ISO_8859_1);
+  private static final int[] DECODE = new int[128];
+
+  static {
+    Arrays.fill(DECODE, -1);
+    for (int i = 0; i < 64; i++) {
+      DECODE[STANDARD[i]] = i;
+      DECODE[URL_SAFE[i]] = i;
+    }
+  }
+
+  private final byte[] alphabet;
+  private final boolean padding;
+
+  private Base64Codec(byte[] alphabet, boolean padding) {
+    this.alphabet = alphabet;
+    this.padding = padding;
+  }
+
+  static Base64Codec standard() {
+    return new Base64Codec(STANDARD, true);
+  }
+
+  static Base64Codec urlSafe() {
+    return new Base64Codec(URL_SAFE, false);
+  }
+
+  byte[] encode(byte[] src, int off, int len) {
+    final byte[] dst = new byte[encodedLength(len)];
+    final int end = off + len - len % 3;
+    int d = 0;
+    for (int s = off; s < end; s += 3) {
+      final int bits = (src[s] & 0xFF) << 16 | (src[s + 1] & 0xFF) << 8 | (src[s + 2] & 0xFF);
+      dst[d++] = alphabet[bits >>> 18];
+      dst[d++] = alphabet[(bits >>> 12) & 0x3F];
+      dst[d++] = alphabet[(bits >>> 6) & 0x3F];
+      dst[d++] = alphabet[bits & 0x3F];
+    }
+    final int remaining = off + len - end;
+    if (remaining > 0) {
+      final int b0 = src[end] & 0xFF;
+      final int b1 = remaining == 2 ? src[end + 1] & 0xFF : 0;
+      dst[d++] = alphabet[b0 >>> 2];
+      dst[d++] = alphabet[((b0 << 4) | (b1 >>> 4)) & 0x3F];
+      if (remaining == 2) {
+        dst[d++] = alphabet[(b1 << 2) & 0x3F];
+      } else if (padding) {
+        dst[d++] = '=';
+      }
+      if (padding) {
+        dst[d] = '=';
+      }
+    }
+    return dst;
+  }
+
+  String encodeToString(byte[] src, int off, int len) {
+    final byte[] encoded = encode(src, off, len);
+    return new String(encoded, 0, encoded.length, ISO_8859_1);
+  }
+
+  /** Decodes from any ISO-8859-1 sequence, without copying it first. */
+  static byte[] decode(CharSequence src) {
+    int len = src.length();
+    while (len > 0 && src.charAt(len - 1) == '=') {
+      len--;
+    }
+    if (len % 4 == 1 || src.length() - len > 2) {
+      throw new IllegalArgumentException("Invalid base64 length");
+    }
+    final byte[] dst = new byte[len / 4 * 3 + Math.max(0, len % 4 - 1)];
+    final int end = len - len % 4;
+    int d = 0;
+    for (int s = 0; s < end; s += 4) {
+      final int bits =
+          sextet(src, s) << 18
+              | sextet(src, s + 1) << 12
+              | sextet(src, s + 2) << 6
+              | sextet(src, s + 3);
+      dst[d++] = (byte) (bits >>> 16);
+      dst[d++] = (byte) (bits >>> 8);
+      dst[d++] = (byte) bits;
+    }
+    if (len % 4 >= 2) {
+      final int bits = sextet(src, end) << 18 | sextet(src, end + 1) << 12;
+      dst[d++] = (byte) (bits >>> 16);
+      if (len % 4 == 3) {
+        dst[d] = (byte) ((bits | sextet(src, end + 2) << 6) >>> 8);
+      }
+    }
+    return dst;
+  }
+
+  /** Same as {@link #decode(CharSequence)}, for bytes. */
+  static byte[] decode(byte[] src) {
+    return decode(new String(src, ISO_8859_1));
+  }
+
+  private int encodedLength(int len) {
+    return padding ? (len + 2) / 3 * 4 : len / 3 * 4 + (len % 3 == 0 ? 0 : len % 3 + 1);
+  }
+
+  /** @return whether {@code c} belongs to either the standard or the URL safe alphabet */
+  static boolean isAlphabet(char c) {
+    return c < 128 && DECODE[c] >= 0;
+  }
+
+  private static int sextet(CharSequence src, int pos) {
+    final char c = src.charAt(pos);
+    final int v = c < 128 ? DECODE[c] : -1;
+    if (v < 0) {
+      throw new IllegalArgumentException("Illegal base64 character " + (int) c);
+    }
+    return v;
+  }
+}
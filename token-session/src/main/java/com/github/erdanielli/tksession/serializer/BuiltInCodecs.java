@@ -0,0 +1,291 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.StreamCorruptedException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.IntFunction;
+
+import static com.github.erdanielli.tksession.serializer.SuppressedExceptions.readObject;
+
+/**
+ * Codecs every {@link TkAttributeCodecs} starts with. Tags are part of the token format: append
+ * new codecs, never renumber.
+ *
+ * @author erdanielli
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+final class BuiltInCodecs {
+  static final int STRING = 2;
+  static final int BOOLEAN = 3;
+  static final int INTEGER = 4;
+  static final int LONG = 5;
+  static final int BYTE = 6;
+  static final int SHORT = 7;
+  static final int CHARACTER = 8;
+  static final int FLOAT = 9;
+  static final int DOUBLE = 10;
+  static final int UUID_TAG = 11;
+  static final int ENUM = 12;
+  static final int BYTE_ARRAY = 13;
+  static final int INSTANT = 14;
+  static final int DURATION = 15;
+  static final int LOCAL_DATE = 16;
+  static final int LOCAL_TIME = 17;
+  static final int LOCAL_DATE_TIME = 18;
+  static final int ARRAY_LIST = 19;
+  static final int HASH_SET = 20;
+  static final int LINKED_HASH_SET = 21;
+  static final int HASH_MAP = 22;
+  static final int LINKED_HASH_MAP = 23;
+
+  private BuiltInCodecs() {}
+
+  static List<TkAttributeCodec<?>> all() {
+    return Arrays.asList(
+        codec(STRING, String.class, CompactOutput::writeString, CompactInput::readString),
+        codec(BOOLEAN, Boolean.class, CompactOutput::writeBoolean, CompactInput::readBoolean),
+        codec(
+            INTEGER,
+            Integer.class,
+            (out, v) -> out.writeSignedVarLong(v),
+            BuiltInCodecs::readInteger),
+        codec(LONG, Long.class, CompactOutput::writeSignedVarLong, CompactInput::readSignedVarLong),
+        codec(BYTE, Byte.class, (out, v) -> out.writeByte(v), CompactInput::readByte),
+        codec(SHORT, Short.class, (out, v) -> out.writeShort(v), CompactInput::readShort),
+        codec(CHARACTER, Character.class, (out, v) -> out.writeChar(v), CompactInput::readChar),
+        codec(FLOAT, Float.class, CompactOutput::writeFloat, CompactInput::readFloat),
+        codec(DOUBLE, Double.class, CompactOutput::writeDouble, CompactInput::readDouble),
+        codec(UUID_TAG, UUID.class, BuiltInCodecs::writeUuid, BuiltInCodecs::readUuid),
+        codec(ENUM, (Class) Enum.class, BuiltInCodecs::writeEnum, BuiltInCodecs::readEnum),
+        codec(BYTE_ARRAY, byte[].class, BuiltInCodecs::writeBytes, BuiltInCodecs::readBytes),
+        codec(INSTANT, Instant.class, BuiltInCodecs::writeInstant, BuiltInCodecs::readInstant),
+        codec(DURATION, Duration.class, BuiltInCodecs::writeDuration, BuiltInCodecs::readDuration),
+        codec(
+            LOCAL_DATE,
+            LocalDate.class,
+            (out, v) -> out.writeSignedVarLong(v.toEpochDay()),
+            in -> LocalDate.ofEpochDay(in.readSignedVarLong())),
+        codec(
+            LOCAL_TIME,
+            LocalTime.class,
+            (out, v) -> out.writeVarLong(v.toNanoOfDay()),
+            in -> LocalTime.ofNanoOfDay(in.readVarLong())),
+        codec(
+            LOCAL_DATE_TIME,
+            LocalDateTime.class,
+            (out, v) -> {
+              out.writeSignedVarLong(v.toLocalDate().toEpochDay());
+              out.writeVarLong(v.toLocalTime().toNanoOfDay());
+            },
+            in ->
+                LocalDateTime.of(
+                    LocalDate.ofEpochDay(in.readSignedVarLong()),
+                    LocalTime.ofNanoOfDay(in.readVarLong()))),
+        codec(
+            ARRAY_LIST,
+            ArrayList.class,
+            BuiltInCodecs::writeAll,
+            in -> readAll(in, ArrayList::new)),
+        codec(HASH_SET, HashSet.class, BuiltInCodecs::writeAll, in -> readAll(in, HashSet::new)),
+        codec(
+            LINKED_HASH_SET,
+            LinkedHashSet.class,
+            BuiltInCodecs::writeAll,
+            in -> readAll(in, LinkedHashSet::new)),
+        codec(HASH_MAP, HashMap.class, BuiltInCodecs::writeMap, in -> readMap(in, HashMap::new)),
+        codec(
+            LINKED_HASH_MAP,
+            LinkedHashMap.class,
+            BuiltInCodecs::writeMap,
+            in -> readMap(in, LinkedHashMap::new)));
+  }
+
+  private static void writeUuid(CompactOutput out, UUID uuid) {
+    out.writeLong(uuid.getMostSignificantBits());
+    out.writeLong(uuid.getLeastSignificantBits());
+  }
+
+  private static UUID readUuid(CompactInput in) throws IOException {
+    final long most = in.readLong();
+    final long least = in.readLong();
+    return new UUID(most, least);
+  }
+
+  private static void writeEnum(CompactOutput out, Enum<?> value) {
+    out.writeString(value.getDeclaringClass().getName());
+    out.writeString(value.name());
+  }
+
+  private static Enum<?> readEnum(CompactInput in) throws IOException {
+    final String className = in.readString();
+    final String constant = in.readString();
+    final Class<?> type;
+    try {
+      type = Class.forName(className, false, classLoader());
+    } catch (ClassNotFoundException e) {
+      throw new InvalidClassException(className, "unknown enum");
+    }
+    if (!type.isEnum()) {
+      throw new InvalidClassException(className, "not an enum");
+    }
+    try {
+      return Enum.valueOf((Class) type, constant);
+    } catch (IllegalArgumentException e) {
+      throw new InvalidObjectException("unknown constant " + className + "." + constant);
+    }
+  }
+
+  private static Integer readInteger(CompactInput in) throws IOException {
+    final long value = in.readSignedVarLong();
+    if (value != (int) value) {
+      throw new IllegalArgumentException("Integer out of range: " + value);
+    }
+    return (int) value;
+  }
+
+  private static void writeBytes(CompactOutput out, byte[] value) {
+    out.writeVarInt(value.length);
+    out.write(value, 0, value.length);
+  }
+
+  private static byte[] readBytes(CompactInput in) throws IOException {
+    final byte[] result = new byte[readSize(in)];
+    in.readFully(result);
+    return result;
+  }
+
+  private static void writeInstant(CompactOutput out, Instant value) {
+    out.writeSignedVarLong(value.getEpochSecond());
+    out.writeVarInt(value.getNano());
+  }
+
+  private static Instant readInstant(CompactInput in) throws IOException {
+    final long seconds = in.readSignedVarLong();
+    return Instant.ofEpochSecond(seconds, in.readVarInt());
+  }
+
+  private static void writeDuration(CompactOutput out, Duration value) {
+    out.writeSignedVarLong(value.getSeconds());
+    out.writeVarInt(value.getNano());
+  }
+
+  private static Duration readDuration(CompactInput in) throws IOException {
+    final long seconds = in.readSignedVarLong();
+    return Duration.ofSeconds(seconds, in.readVarInt());
+  }
+
+  private static void writeAll(CompactOutput out, Collection<?> values) throws IOException {
+    out.writeVarInt(values.size());
+    for (Object value : values) {
+      out.writeObject(value);
+    }
+  }
+
+  private static <C extends Collection<Object>> C readAll(
+      CompactInput in, IntFunction<C> factory) throws IOException {
+    final int size = readSize(in);
+    final C result = factory.apply(size);
+    for (int i = 0; i < size; i++) {
+      result.add(readObject(in));
+    }
+    return result;
+  }
+
+  private static void writeMap(CompactOutput out, Map<?, ?> values) throws IOException {
+    out.writeVarInt(values.size());
+    for (Map.Entry<?, ?> e : values.entrySet()) {
+      out.writeObject(e.getKey());
+      out.writeObject(e.getValue());
+    }
+  }
+
+  private static <M extends Map<Object, Object>> M readMap(
+      CompactInput in, IntFunction<M> factory) throws IOException {
+    final int size = readSize(in);
+    final M result = factory.apply(size);
+    for (int i = 0; i < size; i++) {
+      result.put(readObject(in), readObject(in));
+    }
+    return result;
+  }
+
+  /** Every element takes at least one byte, which bounds what a corrupted size can allocate. */
+  private static int readSize(CompactInput in) throws IOException {
+    final int size = in.readVarInt();
+    if (size < 0 || size > in.available()) {
+      throw new StreamCorruptedException("invalid size " + size);
+    }
+    return size;
+  }
+
+  private static ClassLoader classLoader() {
+    final ClassLoader cl = Thread.currentThread().getContextClassLoader();
+    return cl == null ? BuiltInCodecs.class.getClassLoader() : cl;
+  }
+
+  private static <T> TkAttributeCodec<T> codec(
+      int tag, Class<T> type, Writer<T> writer, Reader<T> reader) {
+    return new TkAttributeCodec<T>() {
+      @Override
+      public int tag() {
+        return tag;
+      }
+
+      @Override
+      public Class<T> type() {
+        return type;
+      }
+
+      @Override
+      public void write(ObjectOutput output, T value) throws IOException {
+        writer.write((CompactOutput) output, value);
+      }
+
+      @Override
+      public T read(ObjectInput input) throws IOException {
+        return reader.read((CompactInput) input);
+      }
+    };
+  }
+
+  @FunctionalInterface
+  private interface Writer<T> {
+    void write(CompactOutput output, T value) throws IOException;
+  }
+
+  @FunctionalInterface
+  private interface Reader<T> {
+    T read(CompactInput input) throws IOException;
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Startup self-benchmark of cipher suites: round trips of a token sized plain text, each one
+ * decrypting a token encrypted a few round trips before, as servers do. Short samples are taken
+ * until their rate stops improving (the JIT having compiled and intrinsified the ciphers), then the
+ * median of a few more is kept. A suite that doesn't settle in time isn't trusted to be faster.
+ *
+ * @author erdanielli
+ */
+final class CipherSuiteBenchmark {
+  private static final Logger LOGGER = Logger.getLogger(CipherSuiteBenchmark.class.getName());
+  private static final int PLAIN_LENGTH = 1024;
+  /** Tokens in flight: each round trip decrypts the one encrypted that many round trips before. */
+  private static final int BACKLOG = 16;
+  private static final long SAMPLE_DURATION = MILLISECONDS.toNanos(50);
+  /** Samples whose median is compared with the one of the previous as many, then kept. */
+  private static final int WINDOW = 5;
+  /** Gain of the median under which the rate stopped improving. */
+  private static final double SETTLED = 1.05;
+  private static final long MAX_WARM_UP = SECONDS.toNanos(5);
+  /** How much faster than the first available candidate another one must be to replace it. */
+  private static final double MIN_SPEEDUP = 1.2;
+  private static final byte[] NO_DATA = new byte[0];
+
+  static TkCipherSuite fastest(TkCipherSuite... candidates) {
+    TkCipherSuite fastest = null;
+    double best = Double.NaN;
+    for (TkCipherSuite each : candidates) {
+      if (!each.isAvailable()) {
+        LOGGER.info(() -> each + " is not available");
+        continue;
+      }
+      if (fastest != null && Double.isNaN(best)) {
+        break;
+      }
+      final double rate = roundTripsPerSecond(each);
+      LOGGER.info(
+          () ->
+              Double.isNaN(rate)
+                  ? each + " did not settle"
+                  : String.format("%s: %.0f round trips/s", each, rate));
+      if (fastest == null || rate > best * MIN_SPEEDUP) {
+        fastest = each;
+        best = rate;
+      }
+    }
+    if (fastest == null) {
+      throw new IllegalArgumentException("No cipher suite available");
+    }
+    final TkCipherSuite picked = fastest;
+    LOGGER.info(() -> "Picked " + picked);
+    return fastest;
+  }
+
+  /** @return the median rate of {@value #WINDOW} samples once settled, or NaN if it didn't */
+  static double roundTripsPerSecond(TkCipherSuite suite) {
+    final byte[] key = new byte[suite.keyLength()];
+    new SecureRandom().nextBytes(key);
+    final TkCipherSuite.Aead aead = suite.newAead(key, TkNonceGenerator.counter());
+    final byte[] plain = new byte[PLAIN_LENGTH];
+    final ByteBuffer[] tokens = new ByteBuffer[BACKLOG];
+    for (int i = 0; i < BACKLOG; i++) {
+      tokens[i] = aead.encrypt(plain, 0, plain.length, 0, NO_DATA);
+    }
+    final double[] rates = new double[2 * WINDOW];
+    final long deadline = System.nanoTime() + MAX_WARM_UP;
+    for (int i = 0; i < rates.length; i++) {
+      rates[i] = sample(aead, plain, tokens);
+    }
+    while (median(rates, WINDOW, 2 * WINDOW) > SETTLED * median(rates, 0, WINDOW)) {
+      if (System.nanoTime() >= deadline) {
+        return Double.NaN;
+      }
+      System.arraycopy(rates, 1, rates, 0, rates.length - 1);
+      rates[rates.length - 1] = sample(aead, plain, tokens);
+    }
+    for (int i = 0; i < WINDOW; i++) {
+      rates[i] = sample(aead, plain, tokens);
+    }
+    return median(rates, 0, WINDOW);
+  }
+
+  private static double median(double[] rates, int from, int to) {
+    final double[] sorted = Arrays.copyOfRange(rates, from, to);
+    Arrays.sort(sorted);
+    return sorted[sorted.length / 2];
+  }
+
+  private static double sample(TkCipherSuite.Aead aead, byte[] plain, ByteBuffer[] tokens) {
+    final long start = System.nanoTime();
+    long elapsed;
+    long count = 0;
+    do {
+      final int slot = (int) (count % BACKLOG);
+      final ByteBuffer token = tokens[slot];
+      aead.decrypt(
+          token.array(), token.arrayOffset() + token.position(), token.remaining(), NO_DATA);
+      tokens[slot] = aead.encrypt(plain, 0, plain.length, 0, NO_DATA);
+      count++;
+      elapsed = System.nanoTime() - start;
+    } while (elapsed < SAMPLE_DURATION);
+    return count * 1e9 / elapsed;
+  }
+
+  private CipherSuiteBenchmark() {}
+}
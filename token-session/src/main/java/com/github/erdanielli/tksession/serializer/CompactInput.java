@@ -0,0 +1,259 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
+import java.io.StreamCorruptedException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Reads what {@link CompactOutput} wrote, straight from the token bytes.
+ *
+ * @author erdanielli
+ */
+final class CompactInput extends InputStream implements ObjectInput {
+  private final TkAttributeCodecs codecs;
+  private final byte[] buf;
+  private final int end;
+  private int pos;
+
+  CompactInput(TkAttributeCodecs codecs, byte[] buf, int offset, int length) {
+    this.codecs = codecs;
+    this.buf = buf;
+    this.pos = offset;
+    this.end = offset + length;
+  }
+
+  int position() {
+    return pos;
+  }
+
+  // varint decoding
+
+  int readVarInt() throws IOException {
+    final long v = readVarLong();
+    if ((v & ~0xFFFFFFFFL) != 0) {
+      throw new StreamCorruptedException("varint overflow");
+    }
+    return (int) v;
+  }
+
+  long readVarLong() throws IOException {
+    long result = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      final int b = readUnsignedByte();
+      result |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return result;
+      }
+    }
+    throw new StreamCorruptedException("varint overflow");
+  }
+
+  long readSignedVarLong() throws IOException {
+    return unZigZag(readVarLong());
+  }
+
+  /** @see CompactOutput#writeTime(long) */
+  long readTime() throws IOException {
+    final long v = readVarLong();
+    final long value = unZigZag(v >>> 1);
+    return (v & 1) == 0 ? value * 1_000 : value;
+  }
+
+  String readString() throws IOException {
+    final int len = readLength();
+    final String s = new String(buf, pos, len, UTF_8);
+    pos += len;
+    return s;
+  }
+
+  // InputStream
+
+  @Override
+  public int read() {
+    return pos < end ? buf[pos++] & 0xFF : -1;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) {
+    if (len == 0) {
+      return 0;
+    }
+    final int n = Math.min(len, end - pos);
+    if (n <= 0) {
+      return -1;
+    }
+    System.arraycopy(buf, pos, b, off, n);
+    pos += n;
+    return n;
+  }
+
+  @Override
+  public long skip(long n) {
+    final int skipped = (int) Math.max(0, Math.min(n, end - pos));
+    pos += skipped;
+    return skipped;
+  }
+
+  @Override
+  public int available() {
+    return end - pos;
+  }
+
+  // ObjectInput
+
+  @Override
+  public Object readObject() throws IOException, ClassNotFoundException {
+    return codecs.read(this);
+  }
+
+  @Override
+  public void readFully(byte[] b) throws IOException {
+    readFully(b, 0, b.length);
+  }
+
+  @Override
+  public void readFully(byte[] b, int off, int len) throws IOException {
+    require(len);
+    System.arraycopy(buf, pos, b, off, len);
+    pos += len;
+  }
+
+  @Override
+  public int skipBytes(int n) {
+    return (int) skip(n);
+  }
+
+  @Override
+  public boolean readBoolean() throws IOException {
+    return readUnsignedByte() != 0;
+  }
+
+  @Override
+  public byte readByte() throws IOException {
+    return (byte) readUnsignedByte();
+  }
+
+  @Override
+  public int readUnsignedByte() throws IOException {
+    require(1);
+    return buf[pos++] & 0xFF;
+  }
+
+  @Override
+  public short readShort() throws IOException {
+    return (short) readUnsignedShort();
+  }
+
+  @Override
+  public int readUnsignedShort() throws IOException {
+    require(2);
+    return ((buf[pos++] & 0xFF) << 8) | (buf[pos++] & 0xFF);
+  }
+
+  @Override
+  public char readChar() throws IOException {
+    return (char) readUnsignedShort();
+  }
+
+  @Override
+  public int readInt() throws IOException {
+    require(4);
+    return ((buf[pos++] & 0xFF) << 24)
+        | ((buf[pos++] & 0xFF) << 16)
+        | ((buf[pos++] & 0xFF) << 8)
+        | (buf[pos++] & 0xFF);
+  }
+
+  @Override
+  public long readLong() throws IOException {
+    return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+  }
+
+  @Override
+  public float readFloat() throws IOException {
+    return Float.intBitsToFloat(readInt());
+  }
+
+  @Override
+  public double readDouble() throws IOException {
+    return Double.longBitsToDouble(readLong());
+  }
+
+  @Override
+  public String readLine() {
+    if (pos >= end) {
+      return null;
+    }
+    final StringBuilder line = new StringBuilder();
+    while (pos < end) {
+      final char c = (char) (buf[pos++] & 0xFF);
+      if (c == '\n') {
+        break;
+      }
+      if (c == '\r') {
+        if (pos < end && buf[pos] == '\n') {
+          pos++;
+        }
+        break;
+      }
+      line.append(c);
+    }
+    return line.toString();
+  }
+
+  /** @see CompactOutput#writeUTF(String) */
+  @Override
+  public String readUTF() throws IOException {
+    return readString();
+  }
+
+  @Override
+  public void close() {
+    // NOP
+  }
+
+  private static long unZigZag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  private int readLength() throws IOException {
+    final int len = readVarInt();
+    require(len);
+    return len;
+  }
+
+  Object readSerialized() throws IOException, ClassNotFoundException {
+    final int len = readLength();
+    try (final ObjectInputStream input =
+        new ObjectInputStream(new ByteArrayInputStream(buf, pos, len))) {
+      final Object result = input.readObject();
+      pos += len;
+      return result;
+    }
+  }
+
+  private void require(int len) throws EOFException {
+    if (len < 0 || len > end - pos) {
+      throw new EOFException();
+    }
+  }
+}
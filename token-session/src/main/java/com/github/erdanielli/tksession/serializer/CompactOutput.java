@@ -0,0 +1,238 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Growable in-memory {@link ObjectOutput} used by {@link TkCompactSerializer}. Fixed width
+ * primitives follow the {@link java.io.DataOutput} contract, strings are written as varint length
+ * plus UTF-8 and objects are written by the {@link TkAttributeCodecs}.
+ *
+ * @author erdanielli
+ */
+final class CompactOutput extends OutputStream implements ObjectOutput {
+  private final TkAttributeCodecs codecs;
+  private byte[] buf;
+  private int count;
+
+  /** Starts writing after {@code headroom} unused bytes. */
+  CompactOutput(TkAttributeCodecs codecs, int headroom) {
+    this.codecs = codecs;
+    this.buf = new byte[headroom + 256];
+    this.count = headroom;
+  }
+
+  int size() {
+    return count;
+  }
+
+  /** Discards everything written after {@code size}. */
+  void truncate(int size) {
+    count = size;
+  }
+
+  /** @return the bytes written since {@code start}, without copying them */
+  ByteBuffer toBuffer(int start) {
+    return ByteBuffer.wrap(buf, start, count - start);
+  }
+
+  // varint encoding
+
+  void writeVarInt(int value) {
+    writeVarLong(value & 0xFFFFFFFFL);
+  }
+
+  void writeVarLong(long value) {
+    ensureCapacity(10);
+    long v = value;
+    while ((v & ~0x7FL) != 0) {
+      buf[count++] = (byte) ((v & 0x7F) | 0x80);
+      v >>>= 7;
+    }
+    buf[count++] = (byte) v;
+  }
+
+  void writeSignedVarLong(long value) {
+    writeVarLong(zigZag(value));
+  }
+
+  /**
+   * Writes a (signed) amount of milliseconds, using whole seconds whenever there is no precision
+   * loss. The lowest bit tells which unit was used.
+   */
+  void writeTime(long millis) {
+    if (millis % 1_000 == 0) {
+      writeVarLong(zigZag(millis / 1_000) << 1);
+    } else {
+      writeVarLong((zigZag(millis) << 1) | 1);
+    }
+  }
+
+  void writeString(String s) {
+    final byte[] bytes = s.getBytes(UTF_8);
+    writeVarInt(bytes.length);
+    write(bytes, 0, bytes.length);
+  }
+
+  /**
+   * Moves everything written since {@code mark} forward, prefixing it with its length in bytes.
+   *
+   * @param mark a previous {@link #size()}
+   */
+  void prefixLength(int mark) {
+    final int length = count - mark;
+    final int prefix = Varints.size(length);
+    ensureCapacity(prefix);
+    System.arraycopy(buf, mark, buf, mark + prefix, length);
+    final int end = count + prefix;
+    count = mark;
+    writeVarInt(length);
+    count = end;
+  }
+
+  // OutputStream
+
+  @Override
+  public void write(int b) {
+    ensureCapacity(1);
+    buf[count++] = (byte) b;
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) {
+    ensureCapacity(len);
+    System.arraycopy(b, off, buf, count, len);
+    count += len;
+  }
+
+  // ObjectOutput
+
+  @Override
+  public void writeObject(Object obj) throws IOException {
+    codecs.write(this, null, obj);
+  }
+
+  /** Same as {@link #writeObject(Object)}, also considering codecs bound to the attribute name. */
+  void writeAttributeValue(String name, Object value) throws IOException {
+    codecs.write(this, name, value);
+  }
+
+  @Override
+  public void writeBoolean(boolean v) {
+    write(v ? 1 : 0);
+  }
+
+  @Override
+  public void writeByte(int v) {
+    write(v);
+  }
+
+  @Override
+  public void writeShort(int v) {
+    ensureCapacity(2);
+    buf[count++] = (byte) (v >>> 8);
+    buf[count++] = (byte) v;
+  }
+
+  @Override
+  public void writeChar(int v) {
+    writeShort(v);
+  }
+
+  @Override
+  public void writeInt(int v) {
+    ensureCapacity(4);
+    buf[count++] = (byte) (v >>> 24);
+    buf[count++] = (byte) (v >>> 16);
+    buf[count++] = (byte) (v >>> 8);
+    buf[count++] = (byte) v;
+  }
+
+  @Override
+  public void writeLong(long v) {
+    writeInt((int) (v >>> 32));
+    writeInt((int) v);
+  }
+
+  @Override
+  public void writeFloat(float v) {
+    writeInt(Float.floatToIntBits(v));
+  }
+
+  @Override
+  public void writeDouble(double v) {
+    writeLong(Double.doubleToLongBits(v));
+  }
+
+  @Override
+  public void writeBytes(String s) {
+    final int len = s.length();
+    ensureCapacity(len);
+    for (int i = 0; i < len; i++) {
+      buf[count++] = (byte) s.charAt(i);
+    }
+  }
+
+  @Override
+  public void writeChars(String s) {
+    final int len = s.length();
+    for (int i = 0; i < len; i++) {
+      writeChar(s.charAt(i));
+    }
+  }
+
+  /** Unlike {@link java.io.DataOutput}, the length is a varint and the content is plain UTF-8. */
+  @Override
+  public void writeUTF(String s) {
+    writeString(s);
+  }
+
+  @Override
+  public void flush() {
+    // NOP
+  }
+
+  @Override
+  public void close() {
+    // NOP
+  }
+
+  private static long zigZag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  void writeSerialized(Object obj) throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (final ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+      output.writeObject(obj);
+    }
+    writeVarInt(bytes.size());
+    bytes.writeTo(this);
+  }
+
+  private void ensureCapacity(int extra) {
+    if (count + extra > buf.length) {
+      buf = Arrays.copyOf(buf, Math.max(buf.length << 1, count + extra));
+    }
+  }
+}
@@ -0,0 +1,40 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** @author erdanielli */
+final class CounterNonceGenerator implements TkNonceGenerator {
+  private final int prefix;
+  private final AtomicLong counter;
+
+  CounterNonceGenerator() {
+    final SecureRandom random = new SecureRandom();
+    this.prefix = random.nextInt();
+    this.counter = new AtomicLong(random.nextLong());
+  }
+
+  @Override
+  public void next(byte[] dst, int offset) {
+    final long value = counter.getAndIncrement();
+    for (int i = 0; i < 4; i++) {
+      dst[offset + i] = (byte) (prefix >>> (24 - 8 * i));
+    }
+    for (int i = 0; i < 8; i++) {
+      dst[offset + 4 + i] = (byte) (value >>> (56 - 8 * i));
+    }
+  }
+}
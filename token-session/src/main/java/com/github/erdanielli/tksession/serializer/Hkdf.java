@@ -0,0 +1,62 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * HKDF with HMAC-SHA256 (RFC 5869).
+ *
+ * @author erdanielli
+ */
+final class Hkdf {
+  private static final String HMAC = "HmacSHA256";
+  private static final int HASH_LENGTH = 32;
+
+  static byte[] derive(byte[] ikm, byte[] salt, byte[] info, int length) {
+    if (length > 255 * HASH_LENGTH) {
+      throw new IllegalArgumentException("HKDF length too big: " + length);
+    }
+    final Mac mac = mac(salt.length == 0 ? new byte[HASH_LENGTH] : salt);
+    final byte[] prk = mac.doFinal(ikm);
+    final Mac expand = mac(prk);
+    final byte[] result = new byte[length];
+    byte[] block = new byte[0];
+    for (int pos = 0, i = 1; pos < length; i++) {
+      expand.update(block);
+      expand.update(info);
+      expand.update((byte) i);
+      block = expand.doFinal();
+      final int n = Math.min(block.length, length - pos);
+      System.arraycopy(block, 0, result, pos, n);
+      pos += n;
+    }
+    return result;
+  }
+
+  private static Mac mac(byte[] key) {
+    try {
+      final Mac mac = Mac.getInstance(HMAC);
+      mac.init(new SecretKeySpec(key, HMAC));
+      return mac;
+    } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+      throw new IllegalArgumentException("HKDF not supported", e);
+    }
+  }
+
+  private Hkdf() {}
+}
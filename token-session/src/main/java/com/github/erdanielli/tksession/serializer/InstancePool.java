@@ -0,0 +1,73 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * Bounded, lock-free pool of instances that aren't thread safe, such as {@link
+ * javax.crypto.Cipher} or {@link javax.crypto.Mac}. A thread takes an idle instance (or creates a
+ * new one when there is none) and gives it back when done; instances returned to a full pool are
+ * simply dropped. Nothing is bound to threads, so short lived or virtual threads don't leak
+ * instances.
+ *
+ * @param <T> the pooled type
+ * @author erdanielli
+ */
+final class InstancePool<T> {
+  private final Supplier<T> factory;
+  private final AtomicReferenceArray<T> idle;
+  private final int mask;
+
+  /** Sized after the available processors, with a floor for threads preempted while using one. */
+  InstancePool(Supplier<T> factory) {
+    this(factory, Math.max(16, 2 * Runtime.getRuntime().availableProcessors()));
+  }
+
+  InstancePool(Supplier<T> factory, int capacity) {
+    this.factory = factory;
+    this.idle = new AtomicReferenceArray<>(Integer.highestOneBit(Math.max(capacity, 1) * 2 - 1));
+    this.mask = idle.length() - 1;
+    release(factory.get());
+  }
+
+  T acquire() {
+    final int start = start();
+    for (int i = 0; i <= mask; i++) {
+      final int slot = (start + i) & mask;
+      final T instance = idle.get(slot);
+      if (instance != null && idle.compareAndSet(slot, instance, null)) {
+        return instance;
+      }
+    }
+    return factory.get();
+  }
+
+  void release(T instance) {
+    final int start = start();
+    for (int i = 0; i <= mask; i++) {
+      final int slot = (start + i) & mask;
+      if (idle.get(slot) == null && idle.compareAndSet(slot, null, instance)) {
+        return;
+      }
+    }
+  }
+
+  /** Spreads threads over the slots, so they rarely compete for the same one. */
+  private int start() {
+    final long id = Thread.currentThread().getId();
+    return (int) (id ^ (id >>> 32)) * 0x9E3779B9 >>> 16;
+  }
+}
@@ -18,4 +18,9 @@ public final class InvalidTokenException extends RuntimeException {
   public InvalidTokenException(RuntimeException cause) {
     super(cause);
   }
+
+  /** Without cause nor stack trace, so instances can be allocated once and thrown many times. */
+  InvalidTokenException(String message) {
+    super(message, null, false, false);
+  }
 }
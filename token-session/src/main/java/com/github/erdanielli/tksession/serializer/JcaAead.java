@@ -0,0 +1,121 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.*;
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static javax.crypto.Cipher.DECRYPT_MODE;
+import static javax.crypto.Cipher.ENCRYPT_MODE;
+
+/** @author erdanielli */
+final class JcaAead implements TkCipherSuite.Aead {
+  static final int IV_LENGTH = TkNonceGenerator.NONCE_LENGTH;
+  /**
+   * Tokens written with a plain secret keep the 16 byte iv they had before key rings, the nonce
+   * filling its last 12 bytes.
+   */
+  static final int LEGACY_IV_LENGTH = 16;
+  static final int TAG_LENGTH = 16;
+  private final JcaCipherSuite suite;
+  private final TkNonceGenerator nonces;
+  private final SecretKeySpec key;
+  private final int ivLength;
+  private final InstancePool<JcaCipherSuite.PooledCipher> ciphers;
+
+  JcaAead(JcaCipherSuite suite, byte[] key, int ivLength, TkNonceGenerator nonces) {
+    this.suite = suite;
+    this.nonces = nonces;
+    this.key = new SecretKeySpec(key, suite.keyAlgorithm());
+    this.ivLength = ivLength;
+    this.ciphers = suite.ciphers();
+  }
+
+  @Override
+  public byte[] decrypt(byte[] encrypted, int offset, int length, byte[] data) {
+    if (length < ivLength + TAG_LENGTH) {
+      throw new IllegalArgumentException(suite.label() + " input too short");
+    }
+    final JcaCipherSuite.PooledCipher pooled = ciphers.acquire();
+    try {
+      final byte[] plain = new byte[length - ivLength - TAG_LENGTH];
+      final Cipher decryptor = initCipher(pooled, DECRYPT_MODE, encrypted, offset);
+      if (data.length > 0) {
+        decryptor.updateAAD(data);
+      }
+      decryptor.doFinal(encrypted, offset + ivLength, length - ivLength, plain, 0);
+      return plain;
+    } catch (BadPaddingException | IllegalBlockSizeException | ShortBufferException e) {
+      throw new IllegalArgumentException(suite.label() + " decryption failed", e);
+    } finally {
+      ciphers.release(pooled);
+    }
+  }
+
+  /**
+   * Encrypts {@code plain[offset, offset + length)} into a single array holding the iv followed by
+   * the cipher text, after {@code headroom} unused bytes.
+   */
+  @Override
+  public ByteBuffer encrypt(byte[] plain, int offset, int length, int headroom, byte[] data) {
+    final JcaCipherSuite.PooledCipher pooled = ciphers.acquire();
+    try {
+      final byte[] result = new byte[headroom + ivLength + length + TAG_LENGTH];
+      nonces.next(result, headroom + ivLength - IV_LENGTH);
+      final Cipher encryptor = initCipher(pooled, ENCRYPT_MODE, result, headroom);
+      if (data.length > 0) {
+        encryptor.updateAAD(data);
+      }
+      final int written = encryptor.doFinal(plain, offset, length, result, headroom + ivLength);
+      return ByteBuffer.wrap(result, headroom, ivLength + written);
+    } catch (BadPaddingException | IllegalBlockSizeException | ShortBufferException e) {
+      throw new IllegalArgumentException(suite.label() + " encryption failed", e);
+    } finally {
+      ciphers.release(pooled);
+    }
+  }
+
+  static byte[] md5Key(String plainSecret) {
+    try {
+      final byte[] fullMd5key =
+          MessageDigest.getInstance("MD5").digest(plainSecret.getBytes(UTF_8));
+      return Arrays.copyOf(fullMd5key, 16);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalArgumentException("MD5 not supported", e);
+    }
+  }
+
+  private Cipher initCipher(
+      JcaCipherSuite.PooledCipher pooled, int mode, byte[] nonce, int offset) {
+    final Cipher cipher = pooled.cipher();
+    try {
+      if (pooled.repeats(key, nonce, offset, ivLength)) {
+        final byte[] other = Arrays.copyOfRange(nonce, offset, offset + ivLength);
+        other[0] ^= 1;
+        cipher.init(DECRYPT_MODE, key, suite.nonceSpec(other, 0, ivLength));
+      }
+      cipher.init(mode, key, suite.nonceSpec(nonce, offset, ivLength));
+      return cipher;
+    } catch (InvalidKeyException | InvalidAlgorithmParameterException e) {
+      throw new IllegalArgumentException("Invalid " + suite.label() + " key", e);
+    }
+  }
+}
@@ -0,0 +1,215 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+import javax.crypto.Cipher;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.security.spec.AlgorithmParameterSpec;
+
+/**
+ * AEAD suite from a JCA provider, writing a {@link TkNonceGenerator#NONCE_LENGTH} bytes nonce
+ * followed by the cipher text and a 16 bytes tag.
+ *
+ * @author erdanielli
+ */
+final class JcaCipherSuite implements TkCipherSuite {
+  private static final JcaCipherSuite DEFAULT_AES_GCM = newAesGcm(null);
+  private static final JcaCipherSuite DEFAULT_CHACHA20_POLY1305 = newChaCha20Poly1305(null);
+  private final int id;
+  private final String name;
+  private final String label;
+  private final String transformation;
+  private final String keyAlgorithm;
+  private final String provider;
+  private final NonceSpec nonceSpec;
+  private final boolean freshNonces;
+  private InstancePool<PooledCipher> ciphers;
+
+  /** Parameters of a nonce held by {@code nonce[offset, offset + length)}. */
+  interface NonceSpec {
+    AlgorithmParameterSpec of(byte[] nonce, int offset, int length);
+  }
+
+  private JcaCipherSuite(
+      int id,
+      String name,
+      String label,
+      String transformation,
+      String keyAlgorithm,
+      String provider,
+      NonceSpec nonceSpec,
+      boolean freshNonces) {
+    this.id = id;
+    this.name = name;
+    this.label = label;
+    this.transformation = transformation;
+    this.keyAlgorithm = keyAlgorithm;
+    this.provider = provider;
+    this.nonceSpec = nonceSpec;
+    this.freshNonces = freshNonces;
+  }
+
+  /** Default provider suites are shared, along with their ciphers. */
+  static JcaCipherSuite aesGcm(String provider) {
+    return provider == null ? DEFAULT_AES_GCM : newAesGcm(provider);
+  }
+
+  static JcaCipherSuite chaCha20Poly1305(String provider) {
+    return provider == null ? DEFAULT_CHACHA20_POLY1305 : newChaCha20Poly1305(provider);
+  }
+
+  private static JcaCipherSuite newAesGcm(String provider) {
+    return new JcaCipherSuite(
+        AES_GCM,
+        "AES-256-GCM",
+        "AES",
+        "AES/GCM/NoPadding",
+        "AES",
+        provider,
+        (nonce, offset, length) ->
+            new GCMParameterSpec(JcaAead.TAG_LENGTH * 8, nonce, offset, length),
+        false);
+  }
+
+  private static JcaCipherSuite newChaCha20Poly1305(String provider) {
+    return new JcaCipherSuite(
+        CHACHA20_POLY1305,
+        "ChaCha20-Poly1305",
+        "ChaCha20-Poly1305",
+        "ChaCha20-Poly1305",
+        "ChaCha20",
+        provider,
+        IvParameterSpec::new,
+        true);
+  }
+
+  @Override
+  public int id() {
+    return id;
+  }
+
+  @Override
+  public String name() {
+    return name;
+  }
+
+  @Override
+  public boolean isAvailable() {
+    try {
+      newCipher();
+      return true;
+    } catch (GeneralSecurityException e) {
+      return false;
+    }
+  }
+
+  @Override
+  public TkCipherSuite.Aead newAead(byte[] key, TkNonceGenerator nonces) {
+    return new JcaAead(this, key, JcaAead.IV_LENGTH, nonces);
+  }
+
+  /** Key made of the truncated MD5 of the secret and 16 byte ivs, as before key rings. */
+  JcaAead legacy(String plainSecret, TkNonceGenerator nonces) {
+    return new JcaAead(this, JcaAead.md5Key(plainSecret), JcaAead.LEGACY_IV_LENGTH, nonces);
+  }
+
+  /** Prefix of error messages. */
+  String label() {
+    return label;
+  }
+
+  String keyAlgorithm() {
+    return keyAlgorithm;
+  }
+
+  AlgorithmParameterSpec nonceSpec(byte[] nonce, int offset, int length) {
+    return nonceSpec.of(nonce, offset, length);
+  }
+
+  /** Shared by the keys of this suite, created on first use. */
+  synchronized InstancePool<PooledCipher> ciphers() {
+    if (ciphers == null) {
+      ciphers =
+          new InstancePool<>(
+              () -> {
+                try {
+                  return new PooledCipher(newCipher(), freshNonces);
+                } catch (GeneralSecurityException e) {
+                  throw new IllegalArgumentException(name + " not supported", e);
+                }
+              });
+    }
+    return ciphers;
+  }
+
+  private Cipher newCipher()
+      throws NoSuchAlgorithmException, NoSuchPaddingException, NoSuchProviderException {
+    return provider == null
+        ? Cipher.getInstance(transformation)
+        : Cipher.getInstance(transformation, provider);
+  }
+
+  /**
+   * Cipher of the pool, remembering the key and nonce of its last initialization when the suite
+   * refuses them twice in a row (as ChaCha20 does, even to decrypt the token just encrypted).
+   */
+  static final class PooledCipher {
+    private final Cipher cipher;
+    private final boolean tracked;
+    private final byte[] lastNonce = new byte[JcaAead.LEGACY_IV_LENGTH];
+    private int lastLength;
+    private Key lastKey;
+
+    PooledCipher(Cipher cipher, boolean tracked) {
+      this.cipher = cipher;
+      this.tracked = tracked;
+    }
+
+    Cipher cipher() {
+      return cipher;
+    }
+
+    /**
+     * Remembers {@code key} and {@code nonce[offset, offset + length)} for the next call.
+     *
+     * @return whether both are those of the previous call, in which case the cipher must be
+     *     initialized with another nonce first
+     */
+    boolean repeats(Key key, byte[] nonce, int offset, int length) {
+      if (!tracked) {
+        return false;
+      }
+      boolean same = length == lastLength;
+      for (int i = 0; same && i < length; i++) {
+        same = lastNonce[i] == nonce[offset + i];
+      }
+      same = same && key.equals(lastKey);
+      System.arraycopy(nonce, offset, lastNonce, 0, length);
+      lastLength = length;
+      lastKey = key;
+      return same;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return provider == null ? name : name + " (" + provider + ")";
+  }
+}
@@ -0,0 +1,229 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+import com.github.erdanielli.tksession.EncodedAttributes;
+import com.github.erdanielli.tksession.Immutables;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Attributes of a restored session, each value kept as its encoded bytes until first read. Names
+ * (and iterating over them) never decode anything.
+ *
+ * <p>The encoded form of immutable values is kept after decoding, so that they can be written back
+ * verbatim until replaced or removed.
+ *
+ * <p>As values may remain undecoded, {@link #put} and {@link #remove} return {@code null} instead
+ * of a previous value that was never read.
+ *
+ * @author erdanielli
+ */
+final class LazyAttributes extends AbstractMap<String, Object> implements EncodedAttributes {
+  private final Object owner;
+  private final byte[] buf;
+  private final Decoder decoder;
+  private final Map<String, Object> values;
+  private Map<String, Encoded> decodedImmutables;
+
+  /** @param owner the serializer that encoded {@code buf} */
+  LazyAttributes(Object owner, byte[] buf, Decoder decoder, int expectedSize) {
+    this.owner = owner;
+    this.buf = buf;
+    this.decoder = decoder;
+    this.values = new HashMap<>(Math.min(expectedSize, 64));
+  }
+
+  /** Registers a value found at {@code buf[offset, offset + length)}. */
+  void putEncoded(String name, int offset, int length) {
+    values.put(name, new Encoded(owner, buf, offset, length));
+  }
+
+  @Override
+  public Object encoded(String name) {
+    final Object value = values.get(name);
+    if (value instanceof Encoded) {
+      return value;
+    }
+    return decodedImmutables == null ? null : decodedImmutables.get(name);
+  }
+
+  @Override
+  public LazyAttributes copy() {
+    for (Object value : values.values()) {
+      if (!(value instanceof Encoded) && !Immutables.isImmutable(value)) {
+        return null;
+      }
+    }
+    final LazyAttributes copy = new LazyAttributes(owner, buf, decoder, values.size());
+    copy.values.putAll(values);
+    if (decodedImmutables != null) {
+      copy.decodedImmutables = new HashMap<>(decodedImmutables);
+    }
+    return copy;
+  }
+
+  @Override
+  public Object get(Object name) {
+    final Object value = values.get(name);
+    return value instanceof Encoded ? decode((String) name, (Encoded) value) : value;
+  }
+
+  @Override
+  public boolean containsKey(Object name) {
+    return values.containsKey(name);
+  }
+
+  @Override
+  public Object put(String name, Object value) {
+    forget(name);
+    return undecoded(values.put(name, value));
+  }
+
+  @Override
+  public Object remove(Object name) {
+    forget(name);
+    return undecoded(values.remove(name));
+  }
+
+  @Override
+  public int size() {
+    return values.size();
+  }
+
+  @Override
+  public Set<Entry<String, Object>> entrySet() {
+    return new AbstractSet<Entry<String, Object>>() {
+      @Override
+      public Iterator<Entry<String, Object>> iterator() {
+        final Iterator<Entry<String, Object>> it = values.entrySet().iterator();
+        return new Iterator<Entry<String, Object>>() {
+          private Entry<String, Object> last;
+
+          @Override
+          public boolean hasNext() {
+            return it.hasNext();
+          }
+
+          @Override
+          public Entry<String, Object> next() {
+            last = it.next();
+            return new LazyEntry(last);
+          }
+
+          @Override
+          public void remove() {
+            it.remove();
+            forget(last.getKey());
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return values.size();
+      }
+    };
+  }
+
+  private Object decode(String name, Encoded encoded) {
+    final Object value;
+    try {
+      value = decoder.decode(name, buf, encoded.offset, encoded.length);
+    } catch (IOException e) {
+      throw new InvalidTokenException(new UncheckedIOException(e));
+    } catch (RuntimeException e) {
+      throw new InvalidTokenException(e);
+    }
+    values.put(name, value);
+    if (Immutables.isImmutable(value)) {
+      if (decodedImmutables == null) {
+        decodedImmutables = new HashMap<>();
+      }
+      decodedImmutables.put(name, encoded);
+    }
+    return value;
+  }
+
+  private void forget(Object name) {
+    if (decodedImmutables != null) {
+      decodedImmutables.remove(name);
+    }
+  }
+
+  private static Object undecoded(Object previous) {
+    return previous instanceof Encoded ? null : previous;
+  }
+
+  @FunctionalInterface
+  interface Decoder {
+    Object decode(String name, byte[] buf, int offset, int length) throws IOException;
+  }
+
+  /** An attribute, name and value, as written by its owner serializer. */
+  static final class Encoded {
+    private final Object owner;
+    private final byte[] buf;
+    final int offset;
+    final int length;
+
+    Encoded(Object owner, byte[] buf, int offset, int length) {
+      this.owner = owner;
+      this.buf = buf;
+      this.offset = offset;
+      this.length = length;
+    }
+
+    boolean isOwnedBy(Object serializer) {
+      return owner == serializer;
+    }
+
+    void writeTo(OutputStream output) throws IOException {
+      output.write(buf, offset, length);
+    }
+  }
+
+  private final class LazyEntry implements Entry<String, Object> {
+    private final Entry<String, Object> entry;
+
+    LazyEntry(Entry<String, Object> entry) {
+      this.entry = entry;
+    }
+
+    @Override
+    public String getKey() {
+      return entry.getKey();
+    }
+
+    @Override
+    public Object getValue() {
+      final Object value = entry.getValue();
+      return value instanceof Encoded ? decode(entry.getKey(), (Encoded) value) : value;
+    }
+
+    @Override
+    public Object setValue(Object value) {
+      forget(entry.getKey());
+      return undecoded(entry.setValue(value));
+    }
+  }
+}
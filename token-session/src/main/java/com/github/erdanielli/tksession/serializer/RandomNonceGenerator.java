@@ -0,0 +1,28 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+import java.security.SecureRandom;
+
+/** @author erdanielli */
+final class RandomNonceGenerator implements TkNonceGenerator {
+  private final SecureRandom random = new SecureRandom();
+
+  @Override
+  public void next(byte[] dst, int offset) {
+    final byte[] nonce = new byte[NONCE_LENGTH];
+    random.nextBytes(nonce);
+    System.arraycopy(nonce, 0, dst, offset, NONCE_LENGTH);
+  }
+}
@@ -14,6 +14,7 @@
 package com.github.erdanielli.tksession.serializer;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 
 /** @author erdanielli */
 @SuppressWarnings("squid:S1610")
@@ -38,8 +39,34 @@ public abstract class SuppressedExceptions {
     return bytes.toByteArray();
   }
 
+  /**
+   * Same as {@link #writeToByteArray(CheckedConsumer)}, but leaving {@code headroom} unused bytes
+   * before the written ones and without the final copy.
+   */
+  public static ByteBuffer writeToBuffer(int headroom, CheckedConsumer cn) {
+    final SlicedOutputStream bytes = new SlicedOutputStream(headroom);
+    try (final ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+      cn.accept(output);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return bytes.slice(headroom);
+  }
+
   private SuppressedExceptions() {}
 
+  private static final class SlicedOutputStream extends ByteArrayOutputStream {
+
+    SlicedOutputStream(int headroom) {
+      super(headroom + 256);
+      count = headroom;
+    }
+
+    ByteBuffer slice(int start) {
+      return ByteBuffer.wrap(buf, start, count - start);
+    }
+  }
+
   @FunctionalInterface
   interface CheckedConsumer {
     void accept(ObjectOutputStream output) throws IOException;
@@ -15,23 +15,98 @@ package com.github.erdanielli.tksession.serializer;
 
 import com.github.erdanielli.tksession.Session;
 
-/** @author erdanielli */
+import java.nio.ByteBuffer;
+
+/**
+ * Encrypts the next serializer output with the keys and {@link TkCipherSuite cipher suite} of a
+ * {@link TkKeyRing} (AES-GCM unless configured otherwise). The ring may be {@link #rotate(String)
+ * rotated} at any time, without disturbing requests in flight.
+ *
+ * @author erdanielli
+ */
 public final class TkAesSerializer implements TkSerializer {
-  private final AesCrypto aes;
+  private volatile TkKeyRing keys;
   private final TkSerializer original;
+  private final TkSessionCache cache;
 
+  /** Single secret, tokens without key id and {@link TkNonceGenerator#counter() counter} nonces. */
   public TkAesSerializer(String plainSecret, TkSerializer next) {
+    this(plainSecret, next, TkNonceGenerator.counter());
+  }
+
+  /** Single secret, tokens without key id. */
+  public TkAesSerializer(String plainSecret, TkSerializer next, TkNonceGenerator nonces) {
+    this(new TkKeyRingBuilder().legacy(plainSecret).nonces(nonces).build(), next);
+  }
+
+  public TkAesSerializer(TkKeyRing keys, TkSerializer next) {
+    this(keys, next, null);
+  }
+
+  /** @param cache cleared whenever a rotation retires a key, if any */
+  public TkAesSerializer(TkKeyRing keys, TkSerializer next, TkSessionCache cache) {
+    this.keys = keys;
     this.original = next;
-    this.aes = new AesCrypto(plainSecret);
+    this.cache = cache;
+  }
+
+  /**
+   * Makes {@code secret} the active key, keeping the previous ones for decryption. Sessions cached
+   * under a retired key are dropped.
+   *
+   * @throws IllegalArgumentException if the active key uses the same key id
+   * @see TkKeyRing#rotate(String)
+   */
+  public synchronized void rotate(String secret) {
+    final TkKeyRing previous = keys;
+    keys = previous.rotate(secret);
+    if (cache != null && !keys.keeps(previous)) {
+      cache.clear();
+    }
+  }
+
+  public TkKeyRing getKeyRing() {
+    return keys;
   }
 
   @Override
   public Session read(byte[] token) {
-    return original.read(aes.decrypt(token));
+    return read(token, 0, token.length);
+  }
+
+  @Override
+  public Session read(byte[] token, int offset, int length) {
+    return original.read(keys.decrypt(token, offset, length));
+  }
+
+  @Override
+  public boolean expired(byte[] input, int offset, int length) {
+    return keys.expired(input, offset, length);
   }
 
   @Override
   public byte[] write(Session session) {
-    return aes.encrypt(original.write(session));
+    return TkSerializer.toByteArray(write(session, 0));
+  }
+
+  @Override
+  public ByteBuffer write(Session session, int headroom) {
+    final ByteBuffer plain = original.write(session, 0);
+    return keys.encrypt(
+        plain.array(),
+        plain.arrayOffset() + plain.position(),
+        plain.remaining(),
+        headroom,
+        expiresAt(session));
+  }
+
+  /** @return the epoch second (rounded up) from which the session is expired, or 0 if never */
+  private static long expiresAt(Session session) {
+    if (session.getMaxInactiveInterval() == 0) {
+      return 0;
+    }
+    final long millis =
+        session.getLastAccessedTime() + session.getMaxInactiveInterval() * 1_000L;
+    return Math.min((millis + 999) / 1_000, 0xFFFF_FFFFL);
   }
 }
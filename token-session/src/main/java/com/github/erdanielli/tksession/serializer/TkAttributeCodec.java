@@ -0,0 +1,43 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * Writes attribute values of a given type without Java serialization. Every codec is identified
+ * on the wire by its one byte {@link #tag()}, which must never change once tokens were issued.
+ *
+ * @param <T> the attribute type
+ * @author erdanielli
+ * @see TkAttributeCodecsBuilder
+ */
+public interface TkAttributeCodec<T> {
+
+  /** Tags below this value are reserved for built-in codecs. */
+  int FIRST_CUSTOM_TAG = 64;
+
+  /** Tags above this value are not allowed (they identify dictionary names). */
+  int LAST_TAG = 127;
+
+  int tag();
+
+  Class<T> type();
+
+  void write(ObjectOutput output, T value) throws IOException;
+
+  T read(ObjectInput input) throws IOException;
+}
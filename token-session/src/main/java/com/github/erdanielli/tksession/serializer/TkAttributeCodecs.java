@@ -0,0 +1,138 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable registry of {@link TkAttributeCodec}s, looked up by attribute name first and by the
+ * exact value type next. Values without a codec fall back to Java serialization.
+ *
+ * <p>It also holds a static dictionary of well-known strings (attribute names, mostly). Those are
+ * written as their position in the dictionary: a single byte for the first 128 entries. Every node
+ * must share the same dictionary, and new entries must only be appended to it.
+ *
+ * @author erdanielli
+ * @see TkAttributeCodecsBuilder
+ */
+public final class TkAttributeCodecs {
+  static final int NULL = 0;
+  static final int SERIALIZED = 1;
+  /** Written by {@link TkCompactSerializer} in place of values kept by a {@link TkAttributeStore}. */
+  static final int STORED = 62;
+  static final int NAME = 63;
+  private static final int FIRST_NAME_TAG = TkAttributeCodec.LAST_TAG + 1;
+  private static final int SHORT_NAMES = 256 - FIRST_NAME_TAG;
+
+  private final TkAttributeCodec<?>[] byTag;
+  private final Map<Class<?>, TkAttributeCodec<?>> byType;
+  private final Map<String, TkAttributeCodec<?>> byName;
+  private final String[] names;
+  private final Map<String, Integer> nameIds;
+
+  TkAttributeCodecs(
+      TkAttributeCodec<?>[] byTag,
+      Map<Class<?>, TkAttributeCodec<?>> byType,
+      Map<String, TkAttributeCodec<?>> byName,
+      List<String> names) {
+    this.byTag = byTag.clone();
+    this.byType = new HashMap<>(byType);
+    this.byName = new HashMap<>(byName);
+    this.names = names.toArray(new String[0]);
+    this.nameIds = new HashMap<>();
+    for (int i = 0; i < this.names.length; i++) {
+      nameIds.put(this.names[i], i);
+    }
+  }
+
+  void write(CompactOutput output, String name, Object value) throws IOException {
+    if (value == null) {
+      output.write(NULL);
+      return;
+    }
+    if (value instanceof String && writeName(output, (String) value)) {
+      return;
+    }
+    TkAttributeCodec<Object> codec = name == null ? null : cast(byName.get(name));
+    if (codec == null || !codec.type().isInstance(value)) {
+      codec = cast(byType(value));
+    }
+    if (codec == null) {
+      output.write(SERIALIZED);
+      output.writeSerialized(value);
+    } else {
+      output.write(codec.tag());
+      codec.write(output, value);
+    }
+  }
+
+  Object read(CompactInput input) throws IOException, ClassNotFoundException {
+    final int tag = input.readUnsignedByte();
+    if (tag == NULL) {
+      return null;
+    }
+    if (tag == SERIALIZED) {
+      return input.readSerialized();
+    }
+    if (tag >= FIRST_NAME_TAG) {
+      return name(tag - FIRST_NAME_TAG);
+    }
+    if (tag == NAME) {
+      return name(input.readVarInt());
+    }
+    final TkAttributeCodec<?> codec = byTag[tag];
+    if (codec == null) {
+      throw new StreamCorruptedException("unknown tag " + tag);
+    }
+    return codec.read(input);
+  }
+
+  private boolean writeName(CompactOutput output, String value) {
+    final Integer id = nameIds.get(value);
+    if (id == null) {
+      return false;
+    }
+    if (id < SHORT_NAMES) {
+      output.write(FIRST_NAME_TAG + id);
+    } else {
+      output.write(NAME);
+      output.writeVarInt(id);
+    }
+    return true;
+  }
+
+  private String name(int id) throws StreamCorruptedException {
+    if (id < 0 || id >= names.length) {
+      throw new StreamCorruptedException("unknown name " + id);
+    }
+    return names[id];
+  }
+
+  private TkAttributeCodec<?> byType(Object value) {
+    if (value instanceof Enum) {
+      final TkAttributeCodec<?> codec = byType.get(((Enum<?>) value).getDeclaringClass());
+      return codec == null ? byType.get(Enum.class) : codec;
+    }
+    return byType.get(value.getClass());
+  }
+
+  @SuppressWarnings("unchecked")
+  private static TkAttributeCodec<Object> cast(TkAttributeCodec<?> codec) {
+    return (TkAttributeCodec<Object>) codec;
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.github.erdanielli.tksession.serializer.TkAttributeCodec.FIRST_CUSTOM_TAG;
+import static com.github.erdanielli.tksession.serializer.TkAttributeCodec.LAST_TAG;
+
+/**
+ * Starts with the built-in codecs (boxed primitives, String, UUID, enums, byte arrays, some {@code
+ * java.time} types and the common {@code java.util} collections).
+ *
+ * @author erdanielli
+ */
+public final class TkAttributeCodecsBuilder {
+  private final TkAttributeCodec<?>[] byTag = new TkAttributeCodec<?>[LAST_TAG + 1];
+  private final Map<Class<?>, TkAttributeCodec<?>> byType = new HashMap<>();
+  private final Map<String, TkAttributeCodec<?>> byName = new HashMap<>();
+  private final List<String> names = new ArrayList<>();
+
+  public TkAttributeCodecsBuilder() {
+    BuiltInCodecs.all().forEach(this::register);
+  }
+
+  /** Registers a codec for every attribute whose value is exactly of {@code codec.type()}. */
+  public TkAttributeCodecsBuilder add(TkAttributeCodec<?> codec) {
+    checkCustomTag(codec);
+    register(codec);
+    return this;
+  }
+
+  /** Registers a codec for a single attribute, regardless of the value type. */
+  public TkAttributeCodecsBuilder add(String attributeName, TkAttributeCodec<?> codec) {
+    checkCustomTag(codec);
+    registerTag(codec);
+    byName.put(attributeName, codec);
+    return this;
+  }
+
+  /**
+   * Appends well-known strings to the dictionary. Ids follow the order of registration, so every
+   * node must register the same names in the same order. Duplicates are ignored.
+   */
+  public TkAttributeCodecsBuilder addNames(Collection<String> wellKnownNames) {
+    wellKnownNames.stream().filter(n -> !names.contains(n)).forEach(names::add);
+    return this;
+  }
+
+  public TkAttributeCodecsBuilder addNames(String... wellKnownNames) {
+    return addNames(Arrays.asList(wellKnownNames));
+  }
+
+  public TkAttributeCodecs build() {
+    return new TkAttributeCodecs(byTag, byType, byName, names);
+  }
+
+  private void register(TkAttributeCodec<?> codec) {
+    registerTag(codec);
+    byType.put(codec.type(), codec);
+  }
+
+  private void registerTag(TkAttributeCodec<?> codec) {
+    final TkAttributeCodec<?> previous = byTag[codec.tag()];
+    if (previous != null && previous != codec) {
+      throw new IllegalArgumentException("Duplicated codec tag " + codec.tag());
+    }
+    byTag[codec.tag()] = codec;
+  }
+
+  private static void checkCustomTag(TkAttributeCodec<?> codec) {
+    if (codec.tag() < FIRST_CUSTOM_TAG || codec.tag() > LAST_TAG) {
+      throw new IllegalArgumentException(
+          "Codec tag must be between " + FIRST_CUSTOM_TAG + " and " + LAST_TAG);
+    }
+  }
+}
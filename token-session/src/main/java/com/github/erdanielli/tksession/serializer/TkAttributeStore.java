@@ -0,0 +1,40 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+import java.util.UUID;
+
+/**
+ * Keeps attribute values too large to travel in tokens, which then carry only a reference and a
+ * hash of them. See {@link TkCompactSerializer#TkCompactSerializer(TkAttributeCodecs,
+ * TkAttributeStore, int)}.
+ *
+ * <p>Values are keyed by session and attribute name, holding the latest one written. Tokens
+ * referencing an older value (or a value the store no longer has) are rejected.
+ *
+ * @author erdanielli
+ * @see TkMemoryAttributeStore
+ * @see TkFileAttributeStore
+ */
+public interface TkAttributeStore {
+
+  /** Replaces the value of an attribute. The array must not be modified afterwards. */
+  void put(UUID session, String name, byte[] value);
+
+  /** @return the value of an attribute, or null if unknown */
+  byte[] get(UUID session, String name);
+
+  /** Notes that a token issued now still references the value. Does nothing by default. */
+  default void touch(UUID session, String name) {}
+}
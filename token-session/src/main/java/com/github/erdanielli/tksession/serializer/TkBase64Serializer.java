@@ -15,14 +15,40 @@ package com.github.erdanielli.tksession.serializer;
 
 import com.github.erdanielli.tksession.Session;
 
-import java.util.Base64;
+import java.nio.ByteBuffer;
 
-/** @author erdanielli */
+/**
+ * Outermost stage, turning bytes into a header value. Both standard and URL safe tokens are
+ * accepted, padded or not.
+ *
+ * @author erdanielli
+ */
 public final class TkBase64Serializer implements TkSerializer {
+  /** Characters decoded to tell whether a token {@link #expired(String) expired}. */
+  private static final int PREFIX_LENGTH = 12;
   private final TkSerializer next;
+  private final Base64Codec codec;
+  private final TkSessionCache cache;
 
+  /** Writes standard, padded base64. */
   public TkBase64Serializer(TkSerializer next) {
+    this(next, false);
+  }
+
+  /**
+   * @param next the serializer producing the bytes to encode
+   * @param urlSafe whether to write the URL safe alphabet without padding, which fits cookies and
+   *     query strings without escaping
+   */
+  public TkBase64Serializer(TkSerializer next, boolean urlSafe) {
+    this(next, urlSafe, null);
+  }
+
+  /** @param cache restored sessions to reuse for repeated tokens, if any */
+  public TkBase64Serializer(TkSerializer next, boolean urlSafe, TkSessionCache cache) {
     this.next = next;
+    this.codec = urlSafe ? Base64Codec.urlSafe() : Base64Codec.standard();
+    this.cache = cache;
   }
 
   /**
@@ -33,12 +59,32 @@ public final class TkBase64Serializer implements TkSerializer {
    */
   public Session readToken(String base64Token) {
     try {
-      return next.read(Base64.getDecoder().decode(base64Token));
+      return cache == null
+          ? next.read(Base64Codec.decode(base64Token))
+          : cache.get(base64Token, tk -> next.read(Base64Codec.decode(tk)));
     } catch (RuntimeException e) {
       throw new InvalidTokenException(e);
     }
   }
 
+  /**
+   * Decodes only the first bytes of the token, for the next serializer to tell whether it {@link
+   * TkSerializer#expired(byte[], int, int) expired}.
+   *
+   * @param base64Token Header value from request
+   * @return true if the token certainly holds an expired session, false if it may not (or is
+   *     invalid, which reading it will tell)
+   */
+  public boolean expired(String base64Token) {
+    final int length = Math.min(base64Token.length(), PREFIX_LENGTH) & ~3;
+    try {
+      final byte[] prefix = Base64Codec.decode(base64Token.subSequence(0, length));
+      return next.expired(prefix, 0, prefix.length);
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+  }
+
   /**
    * Writes at the end of the chain, encoding the incoming bytes in base64 format
    *
@@ -46,12 +92,14 @@ public final class TkBase64Serializer implements TkSerializer {
    * @return a base64 encoded token representation of the session
    */
   public String writeToken(Session session) {
-    return Base64.getEncoder().encodeToString(next.write(session));
+    final ByteBuffer bytes = next.write(session, 0);
+    return codec.encodeToString(
+        bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
   }
 
   @Override
   public Session read(byte[] token) {
-    return next.read(Base64.getDecoder().decode(token));
+    return next.read(Base64Codec.decode(token));
   }
 
   /**
@@ -61,6 +109,7 @@ public final class TkBase64Serializer implements TkSerializer {
    */
   @Override
   public byte[] write(Session session) {
-    return Base64.getEncoder().encode(next.write(session));
+    final ByteBuffer bytes = next.write(session, 0);
+    return codec.encode(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
   }
 }
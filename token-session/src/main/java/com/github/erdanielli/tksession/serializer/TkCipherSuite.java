@@ -0,0 +1,137 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Authenticated encryption used by a {@link TkKeyRing}. Tokens record the {@link #id()} of the
+ * suite that wrote them, so rings keep reading every available suite while they encrypt with one.
+ *
+ * @author erdanielli
+ */
+public interface TkCipherSuite {
+  int AES_GCM = 1;
+  int CHACHA20_POLY1305 = 2;
+  int AES_SIV = 3;
+
+  /** @return written in tokens, from 1 to 127, never reused by another algorithm */
+  int id();
+
+  String name();
+
+  /** @return the length of the keys given to {@link #newAead(byte[], TkNonceGenerator)} */
+  default int keyLength() {
+    return 32;
+  }
+
+  /** @return whether this JVM (and provider, if any) supports the suite */
+  boolean isAvailable();
+
+  /**
+   * @param key {@link #keyLength()} bytes
+   * @param nonces ignored by deterministic suites
+   * @throws IllegalArgumentException if not {@link #isAvailable() available}
+   */
+  Aead newAead(byte[] key, TkNonceGenerator nonces);
+
+  /** A suite bound to a key. Thread safe. */
+  interface Aead {
+
+    /**
+     * Encrypts {@code plain[offset, offset + length)} into a single array, after {@code headroom}
+     * unused bytes.
+     *
+     * @param data authenticated along, but neither encrypted nor written (may be empty)
+     */
+    ByteBuffer encrypt(byte[] plain, int offset, int length, int headroom, byte[] data);
+
+    /**
+     * @param data the one given to {@link #encrypt(byte[], int, int, int, byte[])}
+     * @return the plain bytes of {@code encrypted[offset, offset + length)}
+     * @throws IllegalArgumentException if not authentic
+     */
+    byte[] decrypt(byte[] encrypted, int offset, int length, byte[] data);
+  }
+
+  /** AES-256-GCM from the default provider. */
+  static TkCipherSuite aesGcm() {
+    return aesGcm(null);
+  }
+
+  /** @param provider JCA provider name, or null for the default one */
+  static TkCipherSuite aesGcm(String provider) {
+    return JcaCipherSuite.aesGcm(provider);
+  }
+
+  /** ChaCha20-Poly1305 from the default provider, available since Java 11. */
+  static TkCipherSuite chaCha20Poly1305() {
+    return chaCha20Poly1305(null);
+  }
+
+  /** @param provider JCA provider name, or null for the default one */
+  static TkCipherSuite chaCha20Poly1305(String provider) {
+    return JcaCipherSuite.chaCha20Poly1305(provider);
+  }
+
+  /**
+   * Deterministic AES-SIV (RFC 5297): the same plain text always yields the same token, so
+   * unchanged sessions keep the same header (which HPACK can then index). Tokens only reveal
+   * whether two sessions are identical; nonces are not used at all, so they can't be misused.
+   */
+  static TkCipherSuite aesSiv() {
+    return aesSiv(null);
+  }
+
+  /** @param provider JCA provider name, or null for the default one */
+  static TkCipherSuite aesSiv(String provider) {
+    return new AesSivCipherSuite(provider);
+  }
+
+  /** The suites rings read even when they encrypt with another one, if available. */
+  static TkCipherSuite[] builtIn() {
+    return new TkCipherSuite[] {aesGcm(), chaCha20Poly1305(), aesSiv()};
+  }
+
+  /**
+   * Times the available {@code candidates} on token sized work, once their rates settle.
+   *
+   * @return the first available candidate, unless another is clearly (20%) faster
+   * @throws IllegalArgumentException if none is available
+   */
+  static TkCipherSuite fastest(TkCipherSuite... candidates) {
+    return CipherSuiteBenchmark.fastest(candidates);
+  }
+
+  /**
+   * @param name {@code aes-gcm}, {@code chacha20-poly1305}, {@code auto} (the {@link
+   *     #fastest(TkCipherSuite...) fastest} of both) or the deterministic {@code aes-siv}
+   * @param provider JCA provider name, or null for the default one
+   * @throws IllegalArgumentException if the name is unknown
+   */
+  static TkCipherSuite forName(String name, String provider) {
+    switch (name) {
+      case "aes-gcm":
+        return aesGcm(provider);
+      case "chacha20-poly1305":
+        return chaCha20Poly1305(provider);
+      case "aes-siv":
+        return aesSiv(provider);
+      case "auto":
+        return fastest(aesGcm(provider), chaCha20Poly1305(provider));
+      default:
+        throw new IllegalArgumentException("Unknown cipher suite: " + name);
+    }
+  }
+}
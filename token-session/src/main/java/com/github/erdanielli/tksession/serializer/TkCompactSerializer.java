@@ -0,0 +1,265 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+import com.github.erdanielli.tksession.RestoredTokenSession;
+import com.github.erdanielli.tksession.Session;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static com.github.erdanielli.tksession.serializer.SuppressedExceptions.readObject;
+
+/**
+ * Hand-rolled alternative to {@link TkJdkSerializer}. The layout is:
+ *
+ * <ul>
+ *   <li>session id as 16 raw bytes
+ *   <li>creation time, then last accessed time as a delta from it (seconds whenever possible)
+ *   <li>max inactive interval as a varint
+ *   <li>attribute count, followed by each attribute prefixed by its length
+ * </ul>
+ *
+ * Attributes are written by {@link #writeAttribute(ObjectOutput, String, Object)}, exactly like
+ * {@link TkJdkSerializer}, so the same customizations apply. Values are encoded by the configured
+ * {@link TkAttributeCodecs}, and only decoded when the restored session reads them.
+ *
+ * <p>Given a {@link TkAttributeStore}, values encoded in more than a threshold of bytes are put
+ * there instead, the token carrying only a tag and a hash of them.
+ *
+ * @author erdanielli
+ */
+public class TkCompactSerializer implements TkSerializer {
+  private static final int HASH_LENGTH = 16;
+  private final TkAttributeCodecs codecs;
+  private final TkAttributeStore store;
+  private final int storeThreshold;
+
+  public TkCompactSerializer() {
+    this(new TkAttributeCodecsBuilder().build());
+  }
+
+  public TkCompactSerializer(TkAttributeCodecs codecs) {
+    this(codecs, null, Integer.MAX_VALUE);
+  }
+
+  /**
+   * @param store keeps the values too large for tokens
+   * @param threshold encoded size (in bytes) above which values go to the store
+   */
+  public TkCompactSerializer(TkAttributeCodecs codecs, TkAttributeStore store, int threshold) {
+    this.codecs = codecs;
+    this.store = store;
+    this.storeThreshold = threshold;
+  }
+
+  @Override
+  public final byte[] write(Session session) {
+    return TkSerializer.toByteArray(write(session, 0));
+  }
+
+  @Override
+  public final ByteBuffer write(Session session, int headroom) {
+    final CompactOutput output = new CompactOutput(codecs, headroom);
+    try {
+      writeSessionId(output, session);
+      output.writeTime(session.getCreationTime());
+      output.writeTime(session.getLastAccessedTime() - session.getCreationTime());
+      output.writeVarInt(session.getMaxInactiveInterval());
+      writeAttributes(output, session);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return output.toBuffer(headroom);
+  }
+
+  @Override
+  public final Session read(byte[] bytes) {
+    return read(bytes, 0, bytes.length);
+  }
+
+  @Override
+  public final Session read(byte[] bytes, int offset, int length) {
+    final CompactInput input = new CompactInput(codecs, bytes, offset, length);
+    try {
+      final UUID sessionId = readSessionId(input);
+      final long creationTime = input.readTime();
+      final long lastAccessedTime = creationTime + input.readTime();
+      final int maxInactiveInterval = input.readVarInt();
+      final Map<String, Object> attributes = readAttributes(sessionId, bytes, input);
+      if (input.available() != 0) {
+        throw new StreamCorruptedException("unexpected trailing bytes");
+      }
+      return RestoredTokenSession.adopt(
+          sessionId, creationTime, lastAccessedTime, maxInactiveInterval, attributes);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void writeSessionId(ObjectOutput output, Session s) throws IOException {
+    final UUID uuid = s.getUUID();
+    output.writeLong(uuid.getMostSignificantBits());
+    output.writeLong(uuid.getLeastSignificantBits());
+  }
+
+  private UUID readSessionId(ObjectInput input) throws IOException {
+    final long most = input.readLong();
+    final long least = input.readLong();
+    return new UUID(most, least);
+  }
+
+  /**
+   * Attributes restored by this serializer and left untouched are copied as they were read. Those
+   * offloaded to the store are marked with a leading {@link TkAttributeCodecs#STORED} tag, which is
+   * never the first byte of a name.
+   */
+  private void writeAttributes(CompactOutput output, Session s) throws IOException {
+    final List<String> names = Collections.list(s.getAttributeNames());
+    output.writeVarInt(names.size());
+    for (String name : names) {
+      final int mark = output.size();
+      final Object encoded = s.getEncodedAttribute(name);
+      if (encoded instanceof LazyAttributes.Encoded
+          && ((LazyAttributes.Encoded) encoded).isOwnedBy(this)) {
+        ((LazyAttributes.Encoded) encoded).writeTo(output);
+        if (isStored(output.toBuffer(mark))) {
+          store.touch(s.getUUID(), name);
+        }
+      } else {
+        writeAttribute(output, name, s.getAttribute(name));
+        if (store != null && output.size() - mark > storeThreshold) {
+          offload(output, s.getUUID(), name, mark);
+        }
+      }
+      output.prefixLength(mark);
+    }
+  }
+
+  /** Replaces the value of the attribute written since {@code mark} by its hash. */
+  private void offload(CompactOutput output, UUID uuid, String name, int mark) throws IOException {
+    final ByteBuffer written = output.toBuffer(mark);
+    final CompactInput input =
+        new CompactInput(codecs, written.array(), mark, written.remaining());
+    readObject(input);
+    final byte[] value = TkSerializer.toByteArray(output.toBuffer(input.position()));
+    store.put(uuid, name, value);
+    output.truncate(mark);
+    output.write(TkAttributeCodecs.STORED);
+    output.writeObject(name);
+    output.write(hash(value), 0, HASH_LENGTH);
+  }
+
+  private static boolean isStored(ByteBuffer attribute) {
+    return attribute.get(attribute.position()) == TkAttributeCodecs.STORED;
+  }
+
+  /** Only names are decoded here, whole attributes are decoded when first read. */
+  private Map<String, Object> readAttributes(UUID uuid, byte[] bytes, CompactInput input)
+      throws IOException {
+    final int size = input.readVarInt();
+    final LazyAttributes attributes =
+        new LazyAttributes(
+            this,
+            bytes,
+            (name, buf, offset, length) -> readValue(uuid, name, buf, offset, length),
+            size);
+    for (int i = 0; i < size; i++) {
+      final int length = input.readVarInt();
+      final int start = input.position();
+      final int end = start + length;
+      if (length > input.available()) {
+        throw new EOFException();
+      }
+      if (length > 0 && bytes[start] == TkAttributeCodecs.STORED) {
+        input.skip(1);
+      }
+      final String key = readObject(input);
+      if (input.position() > end) {
+        throw new StreamCorruptedException("attribute '" + key + "' is longer than declared");
+      }
+      attributes.putEncoded(key, start, length);
+      input.skip(end - input.position());
+    }
+    return attributes;
+  }
+
+  private Object readValue(UUID uuid, String name, byte[] bytes, int offset, int length)
+      throws IOException {
+    final CompactInput input = new CompactInput(codecs, bytes, offset, length);
+    final boolean stored = bytes[offset] == TkAttributeCodecs.STORED;
+    if (stored) {
+      input.skip(1);
+    }
+    readObject(input);
+    if (stored) {
+      final byte[] value = restore(uuid, name, input);
+      return readValue(name, new CompactInput(codecs, value, 0, value.length));
+    }
+    return readValue(name, input);
+  }
+
+  private byte[] restore(UUID uuid, String name, CompactInput input) throws IOException {
+    if (store == null || input.available() != HASH_LENGTH) {
+      throw new StreamCorruptedException("attribute '" + name + "' can't be restored");
+    }
+    final byte[] expected = new byte[HASH_LENGTH];
+    input.readFully(expected);
+    final byte[] value = store.get(uuid, name);
+    if (value == null) {
+      throw new IOException("attribute '" + name + "' is missing from the store");
+    }
+    if (!MessageDigest.isEqual(expected, Arrays.copyOf(hash(value), HASH_LENGTH))) {
+      throw new IOException("attribute '" + name + "' was replaced in the store");
+    }
+    return value;
+  }
+
+  private Object readValue(String name, CompactInput input) throws IOException {
+    final Object value = readAttribute(input, name);
+    if (input.available() != 0) {
+      throw new StreamCorruptedException("attribute '" + name + "' was not fully read");
+    }
+    return value;
+  }
+
+  private static byte[] hash(byte[] value) {
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(value);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  protected void writeAttribute(ObjectOutput output, String name, Object value) throws IOException {
+    output.writeObject(name);
+    ((CompactOutput) output).writeAttributeValue(name, value);
+  }
+
+  protected Object readAttribute(ObjectInput input, String name) throws IOException {
+    return readObject(input);
+  }
+}
@@ -0,0 +1,198 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+import com.github.erdanielli.tksession.Session;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Deflates whatever the next serializer writes, as long as it is worth it. The first byte tells
+ * whether the rest is stored as is or compressed (in which case the original length follows as a
+ * varint), so both kinds of tokens are always readable.
+ *
+ * <p>Compression may use a preset {@link TkCompressionDictionary}, whose id is then written right
+ * after the first byte. Only the last dictionary is used for writing, all of them for reading.
+ *
+ * <p>{@link Deflater} and {@link Inflater} instances are kept per thread.
+ *
+ * @author erdanielli
+ */
+public final class TkCompressingSerializer implements TkSerializer {
+  static final byte STORED = 0;
+  static final byte DEFLATED = 1;
+  static final byte DEFLATED_WITH_DICTIONARY = 2;
+
+  /** Upper bound for the inflated size, so a token can't claim huge buffers. */
+  static final int MAX_INFLATED_LENGTH = 1 << 20;
+
+  private static final ThreadLocal<Deflater> DEFLATER =
+      ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+  private static final ThreadLocal<Inflater> INFLATER =
+      ThreadLocal.withInitial(() -> new Inflater(true));
+
+  private final TkSerializer next;
+  private final int threshold;
+  private final TkCompressionDictionary[] dictionaries;
+  private final TkCompressionDictionary current;
+
+  public TkCompressingSerializer(TkSerializer next) {
+    this(next, 256);
+  }
+
+  /**
+   * @param next the serializer being compressed
+   * @param threshold payloads smaller than this (in bytes) are never compressed
+   */
+  public TkCompressingSerializer(TkSerializer next, int threshold) {
+    this(next, threshold, Collections.emptyList());
+  }
+
+  /**
+   * @param next the serializer being compressed
+   * @param threshold payloads smaller than this (in bytes) are never compressed
+   * @param dictionaries known dictionaries, the last one being used for writing
+   */
+  public TkCompressingSerializer(
+      TkSerializer next, int threshold, List<TkCompressionDictionary> dictionaries) {
+    this.next = next;
+    this.threshold = threshold;
+    this.dictionaries = new TkCompressionDictionary[TkCompressionDictionary.MAX_ID + 1];
+    for (TkCompressionDictionary d : dictionaries) {
+      if (this.dictionaries[d.getId()] != null) {
+        throw new IllegalArgumentException("Duplicated dictionary id " + d.getId());
+      }
+      this.dictionaries[d.getId()] = d;
+    }
+    this.current = dictionaries.isEmpty() ? null : dictionaries.get(dictionaries.size() - 1);
+  }
+
+  @Override
+  public byte[] write(Session session) {
+    return TkSerializer.toByteArray(write(session, 0));
+  }
+
+  @Override
+  public ByteBuffer write(Session session, int headroom) {
+    final ByteBuffer plain = next.write(session, headroom + 1);
+    final byte[] array = plain.array();
+    final int offset = plain.arrayOffset() + plain.position();
+    final int length = plain.remaining();
+    if (length >= threshold) {
+      final ByteBuffer compressed = deflate(array, offset, length, current, headroom);
+      if (compressed != null) {
+        return compressed;
+      }
+    }
+    array[offset - 1] = STORED;
+    return ByteBuffer.wrap(array, offset - 1, length + 1);
+  }
+
+  @Override
+  public Session read(byte[] input) {
+    return read(input, 0, input.length);
+  }
+
+  @Override
+  public Session read(byte[] input, int offset, int length) {
+    if (length == 0) {
+      throw new IllegalArgumentException("Empty input");
+    }
+    final int end = offset + length;
+    switch (input[offset]) {
+      case STORED:
+        return next.read(input, offset + 1, length - 1);
+      case DEFLATED:
+        return next.read(inflate(input, offset + 1, end, null));
+      case DEFLATED_WITH_DICTIONARY:
+        return next.read(inflateWithDictionary(input, offset + 1, end));
+      default:
+        throw new IllegalArgumentException("Unknown compression " + input[offset]);
+    }
+  }
+
+  /** @return null if the compressed form would not be smaller than the stored one */
+  private static ByteBuffer deflate(
+      byte[] plain, int offset, int length, TkCompressionDictionary dictionary, int headroom) {
+    final int header =
+        1 + (dictionary == null ? 0 : Varints.size(dictionary.getId())) + Varints.size(length);
+    if (length <= header) {
+      return null;
+    }
+    final Deflater deflater = DEFLATER.get();
+    deflater.reset();
+    final byte[] out = new byte[headroom + length];
+    int pos = headroom + 1;
+    if (dictionary == null) {
+      out[headroom] = DEFLATED;
+    } else {
+      out[headroom] = DEFLATED_WITH_DICTIONARY;
+      pos = Varints.write(out, pos, dictionary.getId());
+      deflater.setDictionary(dictionary.bytes());
+    }
+    deflater.setInput(plain, offset, length);
+    deflater.finish();
+    pos = Varints.write(out, pos, length);
+    while (!deflater.finished() && pos < out.length) {
+      pos += deflater.deflate(out, pos, out.length - pos);
+    }
+    return deflater.finished() ? ByteBuffer.wrap(out, headroom, pos - headroom) : null;
+  }
+
+  private byte[] inflateWithDictionary(byte[] input, int pos, int end) {
+    final int id = Varints.read(input, pos, end);
+    final TkCompressionDictionary dictionary = id < dictionaries.length ? dictionaries[id] : null;
+    if (dictionary == null) {
+      throw new IllegalArgumentException("Unknown dictionary " + id);
+    }
+    return inflate(input, pos + Varints.size(id), end, dictionary);
+  }
+
+  private static byte[] inflate(
+      byte[] input, int pos, int end, TkCompressionDictionary dictionary) {
+    final int length = Varints.read(input, pos, end);
+    if (length > MAX_INFLATED_LENGTH) {
+      throw new IllegalArgumentException("Inflated length too big: " + length);
+    }
+    final int offset = pos + Varints.size(length);
+    final Inflater inflater = INFLATER.get();
+    inflater.reset();
+    if (dictionary != null) {
+      inflater.setDictionary(dictionary.bytes());
+    }
+    inflater.setInput(input, offset, end - offset);
+    final byte[] result = new byte[length];
+    try {
+      int written = 0;
+      while (!inflater.finished() && written < length) {
+        final int n = inflater.inflate(result, written, length - written);
+        if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        written += n;
+      }
+      if (written != length || !inflater.finished()) {
+        throw new IllegalArgumentException("Inflated length mismatch");
+      }
+      return result;
+    } catch (DataFormatException e) {
+      throw new IllegalArgumentException("Inflate failed", e);
+    }
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+/**
+ * A zlib preset dictionary, usually built by {@link TkCompressionDictionaryTrainer}. The id is
+ * written in every token compressed with it, so a dictionary can be replaced by a new one (with
+ * another id) while tokens using the old one are still alive.
+ *
+ * @author erdanielli
+ */
+public final class TkCompressionDictionary {
+  static final int MAX_ID = 255;
+
+  private final int id;
+  private final byte[] bytes;
+
+  public TkCompressionDictionary(int id, byte[] bytes) {
+    if (id < 0 || id > MAX_ID) {
+      throw new IllegalArgumentException("Dictionary id must be between 0 and " + MAX_ID);
+    }
+    if (bytes.length == 0) {
+      throw new IllegalArgumentException("Empty dictionary");
+    }
+    this.id = id;
+    this.bytes = bytes.clone();
+  }
+
+  public int getId() {
+    return id;
+  }
+
+  byte[] bytes() {
+    return bytes;
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Builds a preset dictionary out of sample payloads (whatever the session serializer writes).
+ *
+ * <p>Every 8 byte sequence is scored by the number of samples it appears in. Then, overlapping
+ * segments of the samples are greedily picked by the sum of the scores of the sequences they
+ * cover, without counting a sequence twice. Best segments are placed at the end of the
+ * dictionary, where deflate matches are cheaper.
+ *
+ * <p>Offline usage: {@code TkCompressionDictionaryTrainer <output file> <max size> <sample
+ * files...>}
+ *
+ * @author erdanielli
+ */
+public final class TkCompressionDictionaryTrainer {
+  private static final int K = 8;
+  private static final int SEGMENT = 48;
+  private static final int STEP = 16;
+
+  private TkCompressionDictionaryTrainer() {}
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 3) {
+      throw new IllegalArgumentException("usage: <output file> <max size> <sample files...>");
+    }
+    final List<byte[]> samples = new ArrayList<>();
+    for (int i = 2; i < args.length; i++) {
+      samples.add(Files.readAllBytes(Paths.get(args[i])));
+    }
+    final Path output = Paths.get(args[0]);
+    Files.write(output, train(samples, Integer.parseInt(args[1])));
+  }
+
+  /**
+   * @param samples plaintext payloads, the more the better
+   * @param maxSize dictionary size limit (deflate only uses the last 32KB)
+   */
+  public static byte[] train(Collection<byte[]> samples, int maxSize) {
+    final Map<Long, Integer> frequencies = frequencies(samples);
+    final PriorityQueue<Segment> queue = new PriorityQueue<>();
+    for (byte[] sample : samples) {
+      for (int start = 0; start < sample.length; start += STEP) {
+        final Segment s = new Segment(sample, start, Math.min(SEGMENT, sample.length - start));
+        s.score(frequencies);
+        if (s.score > 0) {
+          queue.add(s);
+        }
+      }
+    }
+
+    final List<Segment> chosen = new ArrayList<>();
+    int size = 0;
+    while (!queue.isEmpty() && size < maxSize) {
+      final Segment s = queue.poll();
+      s.score(frequencies);
+      if (s.score == 0) {
+        continue;
+      }
+      if (!queue.isEmpty() && s.score < queue.peek().score) {
+        queue.add(s);
+        continue;
+      }
+      s.cover(frequencies);
+      chosen.add(s);
+      size += s.length;
+    }
+
+    final byte[] dictionary = new byte[Math.min(size, maxSize)];
+    int end = dictionary.length;
+    for (Segment s : chosen) {
+      final int length = Math.min(s.length, end);
+      end -= length;
+      System.arraycopy(s.sample, s.start, dictionary, end, length);
+      if (end == 0) {
+        break;
+      }
+    }
+    return dictionary;
+  }
+
+  /** How many samples contain each sequence. */
+  private static Map<Long, Integer> frequencies(Collection<byte[]> samples) {
+    final Map<Long, Integer> result = new HashMap<>();
+    for (byte[] sample : samples) {
+      final Set<Long> seen = new HashSet<>();
+      for (int i = 0; i + K <= sample.length; i++) {
+        final long kmer = kmer(sample, i);
+        if (seen.add(kmer)) {
+          result.merge(kmer, 1, Integer::sum);
+        }
+      }
+    }
+    return result;
+  }
+
+  private static long kmer(byte[] b, int pos) {
+    long result = 0;
+    for (int i = pos; i < pos + K; i++) {
+      result = (result << 8) | (b[i] & 0xFF);
+    }
+    return result;
+  }
+
+  private static final class Segment implements Comparable<Segment> {
+    private final byte[] sample;
+    private final int start;
+    private final int length;
+    private int score;
+
+    Segment(byte[] sample, int start, int length) {
+      this.sample = sample;
+      this.start = start;
+      this.length = length;
+    }
+
+    /** Sequences found in a single sample are worthless. */
+    void score(Map<Long, Integer> frequencies) {
+      final Set<Long> seen = new HashSet<>();
+      score = 0;
+      for (int i = start; i + K <= start + length; i++) {
+        final long kmer = kmer(sample, i);
+        final int frequency = frequencies.getOrDefault(kmer, 0);
+        if (frequency > 1 && seen.add(kmer)) {
+          score += frequency;
+        }
+      }
+    }
+
+    void cover(Map<Long, Integer> frequencies) {
+      for (int i = start; i + K <= start + length; i++) {
+        frequencies.put(kmer(sample, i), 0);
+      }
+    }
+
+    @Override
+    public int compareTo(Segment o) {
+      return Integer.compare(o.score, score);
+    }
+  }
+}
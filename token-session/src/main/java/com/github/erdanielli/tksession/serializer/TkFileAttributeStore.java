@@ -0,0 +1,116 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.UUID;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Attribute store keeping each value in a file of a local directory, which survives restarts.
+ * Files are replaced atomically, so readers never see partial values.
+ *
+ * <p>Nothing is deleted when sessions expire: {@link #purge(Duration)} periodically.
+ *
+ * @author erdanielli
+ */
+public final class TkFileAttributeStore implements TkAttributeStore {
+  private static final String SUFFIX = ".attr";
+  private final Path directory;
+  private final Base64Codec names = Base64Codec.urlSafe();
+
+  public TkFileAttributeStore(Path directory) throws IOException {
+    this.directory = Files.createDirectories(directory);
+  }
+
+  @Override
+  public void put(UUID session, String name, byte[] value) {
+    final Path file = file(session, name);
+    try {
+      final Path tmp = Files.createTempFile(directory, null, ".tmp");
+      try {
+        Files.write(tmp, value);
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } finally {
+        Files.deleteIfExists(tmp);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public byte[] get(UUID session, String name) {
+    try {
+      return Files.readAllBytes(file(session, name));
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public void touch(UUID session, String name) {
+    try {
+      Files.setLastModifiedTime(file(session, name), FileTime.fromMillis(now()));
+    } catch (NoSuchFileException e) {
+      // rejected when read
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Deletes the values no token issued within {@code idle} references, which should be longer
+   * than sessions are kept alive for.
+   *
+   * @return how many values were deleted
+   */
+  public int purge(Duration idle) throws IOException {
+    final long limit = now() - idle.toMillis();
+    int deleted = 0;
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+      for (Path file : files) {
+        try {
+          if (Files.getLastModifiedTime(file).toMillis() < limit && Files.deleteIfExists(file)) {
+            deleted++;
+          }
+        } catch (NoSuchFileException e) {
+          // purged concurrently
+        }
+      }
+    }
+    return deleted;
+  }
+
+  /** Attribute names may hold any character, so they are base64 encoded. */
+  private Path file(UUID session, String name) {
+    final byte[] bytes = name.getBytes(UTF_8);
+    return directory.resolve(session + "-" + names.encodeToString(bytes, 0, bytes.length) + SUFFIX);
+  }
+
+  private static long now() {
+    return System.currentTimeMillis();
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+import com.github.erdanielli.tksession.Session;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Alternative to {@link TkAesSerializer} that only signs the next serializer output, for sessions
+ * holding nothing confidential: anyone can read the attributes, but not change them. Tokens are the
+ * key id, followed by the payload and its HMAC-SHA256 truncated to {@value #TAG_LENGTH} bytes.
+ *
+ * <p>Key ids are the same as in {@link TkKeyRing}, but keys are derived for HMAC only.
+ *
+ * @author erdanielli
+ */
+public final class TkHmacSerializer implements TkSerializer {
+  static final int TAG_LENGTH = 16;
+  private static final String ALG = "HmacSHA256";
+  private static final byte[] SALT = "tksession".getBytes(UTF_8);
+  private static final byte[] KEY_INFO = "tksession HMAC-SHA256 key".getBytes(UTF_8);
+  private final TkSerializer original;
+  private final InstancePool<Mac>[] byId;
+  private final int activeId;
+
+  public TkHmacSerializer(String secret, TkSerializer next) {
+    this(Collections.singletonList(secret), next);
+  }
+
+  /**
+   * @param secrets all of them verify tokens, the last one signs
+   * @throws IllegalArgumentException if there is no secret or two of them share the same id
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public TkHmacSerializer(List<String> secrets, TkSerializer next) {
+    if (secrets.isEmpty()) {
+      throw new IllegalArgumentException("No secret");
+    }
+    this.original = next;
+    this.byId = new InstancePool[256];
+    int id = -1;
+    for (String secret : secrets) {
+      id = TkKeyRing.keyId(secret);
+      if (byId[id] != null) {
+        throw new IllegalArgumentException(
+            "Key id " + id + " is used by two secrets, please replace one of them");
+      }
+      final SecretKeySpec key =
+          new SecretKeySpec(Hkdf.derive(secret.getBytes(UTF_8), SALT, KEY_INFO, 32), ALG);
+      byId[id] = new InstancePool<>(() -> newMac(key));
+    }
+    this.activeId = id;
+  }
+
+  @Override
+  public Session read(byte[] token) {
+    return read(token, 0, token.length);
+  }
+
+  @Override
+  public Session read(byte[] token, int offset, int length) {
+    if (length < 1 + TAG_LENGTH) {
+      throw new IllegalArgumentException("HMAC input too short");
+    }
+    final InstancePool<Mac> macs = byId[token[offset] & 0xFF];
+    if (macs == null) {
+      throw new IllegalArgumentException("Unknown key id");
+    }
+    final int signed = length - TAG_LENGTH;
+    final byte[] expected = sign(macs, token, offset, signed);
+    int diff = 0;
+    for (int i = 0; i < TAG_LENGTH; i++) {
+      diff |= expected[i] ^ token[offset + signed + i];
+    }
+    if (diff != 0) {
+      throw new IllegalArgumentException("Invalid signature");
+    }
+    return original.read(token, offset + 1, signed - 1);
+  }
+
+  @Override
+  public byte[] write(Session session) {
+    return TkSerializer.toByteArray(write(session, 0));
+  }
+
+  /** Signs in place, copying the payload only when its array has no room left for the tag. */
+  @Override
+  public ByteBuffer write(Session session, int headroom) {
+    final ByteBuffer payload = original.write(session, headroom + 1);
+    final int start = payload.arrayOffset() + payload.position() - 1;
+    final int length = 1 + payload.remaining();
+    byte[] result = payload.array();
+    result[start] = (byte) activeId;
+    final byte[] tag = sign(byId[activeId], result, start, length);
+    if (result.length - start - length < TAG_LENGTH) {
+      result = Arrays.copyOf(result, start + length + TAG_LENGTH);
+    }
+    System.arraycopy(tag, 0, result, start + length, TAG_LENGTH);
+    return ByteBuffer.wrap(result, start, length + TAG_LENGTH);
+  }
+
+  private static byte[] sign(InstancePool<Mac> macs, byte[] input, int offset, int length) {
+    final Mac mac = macs.acquire();
+    try {
+      mac.update(input, offset, length);
+      return mac.doFinal();
+    } finally {
+      macs.release(mac);
+    }
+  }
+
+  private static Mac newMac(SecretKeySpec key) {
+    try {
+      final Mac mac = Mac.getInstance(ALG);
+      mac.init(key);
+      return mac;
+    } catch (GeneralSecurityException e) {
+      throw new IllegalArgumentException(ALG + " not supported", e);
+    }
+  }
+}
@@ -17,7 +17,7 @@ import com.github.erdanielli.tksession.RestoredTokenSession;
 import com.github.erdanielli.tksession.Session;
 
 import java.io.*;
-import java.util.Collections;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
@@ -29,7 +29,13 @@ public class TkJdkSerializer implements TkSerializer {
 
   @Override
   public final byte[] write(Session session) {
-    return SuppressedExceptions.writeToByteArray(
+    return TkSerializer.toByteArray(write(session, 0));
+  }
+
+  @Override
+  public final ByteBuffer write(Session session, int headroom) {
+    return SuppressedExceptions.writeToBuffer(
+        headroom,
         output -> {
           writeSessionId(output, session);
           output.writeLong(session.getCreationTime());
@@ -41,12 +47,18 @@ public class TkJdkSerializer implements TkSerializer {
 
   @Override
   public final Session read(byte[] bytes) {
-    try (final ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+    return read(bytes, 0, bytes.length);
+  }
+
+  @Override
+  public final Session read(byte[] bytes, int offset, int length) {
+    try (final ObjectInputStream input =
+        new ObjectInputStream(new ByteArrayInputStream(bytes, offset, length))) {
       final UUID sessionId = readSessionId(input);
       final long creationTime = input.readLong();
       final long lastAccessedTime = input.readLong();
       final int maxInactiveInterval = input.readInt();
-      return new RestoredTokenSession(
+      return RestoredTokenSession.adopt(
           sessionId, creationTime, lastAccessedTime, maxInactiveInterval, readAttributes(input));
     } catch (IOException e) {
       throw new UncheckedIOException(e);
@@ -75,9 +87,6 @@ public class TkJdkSerializer implements TkSerializer {
 
   private Map<String, Object> readAttributes(ObjectInput input) throws IOException {
     final int size = input.readInt();
-    if (size == 0) {
-      return Collections.emptyMap();
-    }
     final Map<String, Object> m = new HashMap<>(size);
     for (int i = 0; i < size; i++) {
       final String key = readObject(input);
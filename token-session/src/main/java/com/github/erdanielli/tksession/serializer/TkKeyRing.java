@@ -0,0 +1,221 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Keys derived from secrets with HKDF-SHA256, each one known by a single byte id written in front
+ * of every token, followed by the id of the {@link TkCipherSuite cipher suite} and the session
+ * expiry. The active key encrypts with the ring suite; any key decrypts the tokens carrying its
+ * id, with any suite the ring accepts. The expiry is clear text, so expired tokens are told apart
+ * without decrypting them, but authenticated as associated data.
+ *
+ * <p>A legacy secret (the one used before key rings) may be kept to read older tokens, which have
+ * no key id and start with a 16 byte iv. Tokens are read with the legacy secret unless their
+ * first two bytes name a key and suite of the ring: a single decryption either way. Tokens written
+ * with the legacy secret start with zeros, never taken for a ring token; those written before,
+ * with a random iv, may be once in a few thousand and are then rejected, so the legacy secret
+ * should be dropped once they expired. They are always AES-GCM.
+ *
+ * <p>Rings are immutable: {@link #rotate(String)} returns a new one.
+ *
+ * @author erdanielli
+ * @see TkKeyRingBuilder
+ */
+public final class TkKeyRing {
+  private static final byte[] SALT = "tksession".getBytes(UTF_8);
+  private static final byte[] KEY_INFO = "tksession AES-256-GCM key".getBytes(UTF_8);
+  private static final byte[] ID_INFO = "tksession key id".getBytes(UTF_8);
+
+  /** Set on the suite id of ring tokens, never on the second byte of legacy ones. */
+  private static final int ENVELOPE_FLAG = 0x80;
+  /** Key id, suite id and the expiry as an unsigned 32-bit epoch second. */
+  static final int ENVELOPE_LENGTH = 6;
+  private static final byte[] NO_DATA = new byte[0];
+
+  /** Keys kept for decryption after {@link #rotate(String) rotations}, besides the active one. */
+  static final int MAX_PREVIOUS_KEYS = 3;
+
+  /** By key id, then suite id. */
+  private final TkCipherSuite.Aead[][] byId;
+  private final byte[][] keys;
+  private final int[] order;
+  private final JcaAead legacy;
+  private final TkNonceGenerator nonces;
+  private final TkCipherSuite suite;
+  private final TkCipherSuite[] accepted;
+  private final int activeId;
+
+  /**
+   * @param order key ids, oldest first (the last one being active)
+   * @param accepted the suites that decrypt, including {@code suite}
+   */
+  TkKeyRing(
+      byte[][] keys,
+      int[] order,
+      JcaAead legacy,
+      TkNonceGenerator nonces,
+      TkCipherSuite suite,
+      TkCipherSuite[] accepted) {
+    this.keys = keys;
+    this.order = order;
+    this.legacy = legacy;
+    this.nonces = nonces;
+    this.suite = suite;
+    this.accepted = accepted;
+    this.byId = new TkCipherSuite.Aead[keys.length][];
+    for (int id : order) {
+      byId[id] = new TkCipherSuite.Aead[256];
+      for (TkCipherSuite each : accepted) {
+        byId[id][each.id()] = each.newAead(suiteKey(keys[id], each), nonces);
+      }
+    }
+    this.activeId = order.length == 0 ? -1 : order[order.length - 1];
+  }
+
+  /** @return the id of the key derived from {@code secret}, from 0 to 255 */
+  public static int keyId(String secret) {
+    return Hkdf.derive(secret.getBytes(UTF_8), SALT, ID_INFO, 1)[0] & 0xFF;
+  }
+
+  static byte[] key(String secret) {
+    return Hkdf.derive(secret.getBytes(UTF_8), SALT, KEY_INFO, 32);
+  }
+
+  /** AES-GCM uses the ring key itself, as it did before suites; other suites a subkey of it. */
+  private static byte[] suiteKey(byte[] key, TkCipherSuite suite) {
+    if (suite.id() == TkCipherSuite.AES_GCM) {
+      return key;
+    }
+    final byte[] info = ("tksession " + suite.name() + " key").getBytes(UTF_8);
+    return Hkdf.derive(key, SALT, info, suite.keyLength());
+  }
+
+  /** @return the id of the key used for encryption, or -1 if tokens are written without id */
+  public int getActiveKeyId() {
+    return activeId;
+  }
+
+  /** @return the suite used for encryption (except by the legacy secret, always AES-GCM) */
+  public TkCipherSuite getCipherSuite() {
+    return suite;
+  }
+
+  /**
+   * @return a ring where {@code secret} is the active key, keeping at most {@value
+   *     #MAX_PREVIOUS_KEYS} of the previous ones. A previous key sharing the key id of {@code
+   *     secret} is dropped, as its tokens could no longer be told apart.
+   * @throws IllegalArgumentException if the active key uses the same key id
+   */
+  public TkKeyRing rotate(String secret) {
+    final int id = keyId(secret);
+    final byte[] key = key(secret);
+    if (id == activeId && !Arrays.equals(keys[id], key)) {
+      throw new IllegalArgumentException(
+          "Key id " + id + " is used by the active secret, please pick another one");
+    }
+    final int[] previous = Arrays.stream(order).filter(each -> each != id).toArray();
+    final int kept = Math.min(previous.length, MAX_PREVIOUS_KEYS);
+    final int[] newOrder =
+        Arrays.copyOfRange(previous, previous.length - kept, previous.length + 1);
+    newOrder[kept] = id;
+    final byte[][] newKeys = new byte[keys.length][];
+    for (int each : newOrder) {
+      newKeys[each] = each == id ? key : keys[each];
+    }
+    return new TkKeyRing(newKeys, newOrder, legacy, nonces, suite, accepted);
+  }
+
+  /** @return whether every key of {@code previous} still decrypts its tokens in this ring */
+  boolean keeps(TkKeyRing previous) {
+    for (int id : previous.order) {
+      if (!Arrays.equals(keys[id], previous.keys[id])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @param expiresAt epoch second from which the session is expired, or 0 if never; written in
+   *     clear text by rings with key ids, and authenticated along the cipher text
+   */
+  ByteBuffer encrypt(byte[] plain, int offset, int length, int headroom, long expiresAt) {
+    if (activeId < 0) {
+      return legacy.encrypt(plain, offset, length, headroom, NO_DATA);
+    }
+    final byte[] envelope = new byte[ENVELOPE_LENGTH];
+    envelope[0] = (byte) activeId;
+    envelope[1] = (byte) (suite.id() | ENVELOPE_FLAG);
+    for (int i = 0; i < 4; i++) {
+      envelope[2 + i] = (byte) (expiresAt >>> (24 - 8 * i));
+    }
+    final ByteBuffer encrypted =
+        byId[activeId][suite.id()].encrypt(
+            plain, offset, length, headroom + ENVELOPE_LENGTH, envelope);
+    final byte[] array = encrypted.array();
+    final int start = encrypted.arrayOffset() + encrypted.position() - ENVELOPE_LENGTH;
+    System.arraycopy(envelope, 0, array, start, ENVELOPE_LENGTH);
+    return ByteBuffer.wrap(array, start, encrypted.remaining() + ENVELOPE_LENGTH);
+  }
+
+  /**
+   * Looks at the first {@value #ENVELOPE_LENGTH} bytes only, without authenticating them: a forged
+   * expiry can't make a token readable, only rejected earlier. Tokens {@link #decrypt(byte[], int,
+   * int) read} with the legacy secret have no expiry.
+   *
+   * @return whether the token expiry is known and past
+   */
+  boolean expired(byte[] encrypted, int offset, int length) {
+    if (aead(encrypted, offset, length) == null) {
+      return false;
+    }
+    long expiresAt = 0;
+    for (int i = 2; i < ENVELOPE_LENGTH; i++) {
+      expiresAt = expiresAt << 8 | encrypted[offset + i] & 0xFF;
+    }
+    return expiresAt != 0 && System.currentTimeMillis() >= expiresAt * 1_000;
+  }
+
+  byte[] decrypt(byte[] encrypted, int offset, int length) {
+    final TkCipherSuite.Aead aead = aead(encrypted, offset, length);
+    if (aead != null) {
+      return aead.decrypt(
+          encrypted,
+          offset + ENVELOPE_LENGTH,
+          length - ENVELOPE_LENGTH,
+          Arrays.copyOfRange(encrypted, offset, offset + ENVELOPE_LENGTH));
+    }
+    if (legacy == null) {
+      throw new IllegalArgumentException("Unknown key id or cipher suite");
+    }
+    return legacy.decrypt(encrypted, offset, length, NO_DATA);
+  }
+
+  /** @return the key and suite named by the envelope, or null if it isn't a ring token */
+  private TkCipherSuite.Aead aead(byte[] encrypted, int offset, int length) {
+    if (length < ENVELOPE_LENGTH) {
+      return null;
+    }
+    final TkCipherSuite.Aead[] suites = byId[encrypted[offset] & 0xFF];
+    final int suiteId = encrypted[offset + 1] & 0xFF;
+    return suites == null || (suiteId & ENVELOPE_FLAG) == 0
+        ? null
+        : suites[suiteId ^ ENVELOPE_FLAG];
+  }
+}
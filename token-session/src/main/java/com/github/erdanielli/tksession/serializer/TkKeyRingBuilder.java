@@ -0,0 +1,92 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** @author erdanielli */
+public final class TkKeyRingBuilder {
+  private final List<String> secrets = new ArrayList<>();
+  private String legacySecret;
+  private TkNonceGenerator nonces = TkNonceGenerator.counter();
+  private TkCipherSuite suite = TkCipherSuite.aesGcm();
+
+  /** Adds a key. The last one added encrypts, all of them decrypt. */
+  public TkKeyRingBuilder add(String secret) {
+    secrets.add(secret);
+    return this;
+  }
+
+  /**
+   * Keeps reading tokens written with a plain secret, before key ids. When no key is added, the
+   * legacy secret also encrypts (without key id).
+   */
+  public TkKeyRingBuilder legacy(String secret) {
+    legacySecret = secret;
+    return this;
+  }
+
+  /** Defaults to {@link TkNonceGenerator#counter()}. */
+  public TkKeyRingBuilder nonces(TkNonceGenerator nonces) {
+    this.nonces = nonces;
+    return this;
+  }
+
+  /**
+   * Encrypts with {@code suite}, defaults to {@link TkCipherSuite#aesGcm()}. Every available {@link
+   * TkCipherSuite#builtIn() built-in} suite still decrypts.
+   */
+  public TkKeyRingBuilder suite(TkCipherSuite suite) {
+    this.suite = suite;
+    return this;
+  }
+
+  /** @throws IllegalArgumentException if there is no secret or two of them share the same id */
+  public TkKeyRing build() {
+    if (secrets.isEmpty() && legacySecret == null) {
+      throw new IllegalArgumentException("No secret");
+    }
+    if (suite.id() < 1 || suite.id() > 127) {
+      throw new IllegalArgumentException("Invalid cipher suite id: " + suite.id());
+    }
+    if (!secrets.isEmpty() && !suite.isAvailable()) {
+      throw new IllegalArgumentException(suite + " not supported");
+    }
+    final byte[][] keys = new byte[256][];
+    final int[] order = new int[secrets.size()];
+    for (int i = 0; i < order.length; i++) {
+      final String secret = secrets.get(i);
+      order[i] = TkKeyRing.keyId(secret);
+      if (keys[order[i]] != null) {
+        throw new IllegalArgumentException(
+            "Key id " + order[i] + " is used by two secrets, please replace one of them");
+      }
+      keys[order[i]] = TkKeyRing.key(secret);
+    }
+    final Map<Integer, TkCipherSuite> accepted = new LinkedHashMap<>();
+    accepted.put(suite.id(), suite);
+    for (TkCipherSuite each : TkCipherSuite.builtIn()) {
+      if (!accepted.containsKey(each.id()) && each.isAvailable()) {
+        accepted.put(each.id(), each);
+      }
+    }
+    final JcaAead legacy =
+        legacySecret == null ? null : JcaCipherSuite.aesGcm(null).legacy(legacySecret, nonces);
+    return new TkKeyRing(
+        keys, order, legacy, nonces, suite, accepted.values().toArray(new TkCipherSuite[0]));
+  }
+}
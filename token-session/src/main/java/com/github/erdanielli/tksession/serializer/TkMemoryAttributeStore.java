@@ -0,0 +1,64 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Attribute store local to this node, forgetting the least recently used values once full.
+ *
+ * @author erdanielli
+ */
+public final class TkMemoryAttributeStore implements TkAttributeStore {
+  private final Map<String, byte[]> values;
+
+  /** @param maximumSize how many values to keep, at most */
+  public TkMemoryAttributeStore(int maximumSize) {
+    if (maximumSize < 1) {
+      throw new IllegalArgumentException("Store size must be positive");
+    }
+    this.values =
+        new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+            return size() > maximumSize;
+          }
+        };
+  }
+
+  @Override
+  public synchronized void put(UUID session, String name, byte[] value) {
+    values.put(key(session, name), value);
+  }
+
+  @Override
+  public synchronized byte[] get(UUID session, String name) {
+    return values.get(key(session, name));
+  }
+
+  @Override
+  public synchronized void touch(UUID session, String name) {
+    values.get(key(session, name));
+  }
+
+  public synchronized int size() {
+    return values.size();
+  }
+
+  private static String key(UUID session, String name) {
+    return session + "/" + name;
+  }
+}
@@ -0,0 +1,40 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+/**
+ * Source of the 96-bit nonces used by {@link TkAesSerializer}. GCM requires them to never repeat
+ * under the same key; they don't need to be unpredictable.
+ *
+ * @author erdanielli
+ */
+public interface TkNonceGenerator {
+  int NONCE_LENGTH = 12;
+
+  /** Writes the next {@link #NONCE_LENGTH} bytes of nonce at {@code dst[offset]}. */
+  void next(byte[] dst, int offset);
+
+  /**
+   * A random 32-bit prefix, chosen once, followed by a randomly seeded 64-bit counter. Never blocks
+   * nor locks, and is unique for the life of the instance.
+   */
+  static TkNonceGenerator counter() {
+    return new CounterNonceGenerator();
+  }
+
+  /** Every nonce read from a shared {@link java.security.SecureRandom}. */
+  static TkNonceGenerator secureRandom() {
+    return new RandomNonceGenerator();
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+/**
+ * Rotates the keys of a {@link TkAesSerializer} whenever the secret file changes. The whole
+ * directory is watched, so files replaced through symlinks (like mounted Kubernetes secrets) are
+ * noticed too.
+ *
+ * <p>Events are handled by a daemon thread, stopped by {@link #close()}.
+ *
+ * @author erdanielli
+ */
+public final class TkSecretWatcher implements Closeable {
+  private static final Logger LOGGER = Logger.getLogger(TkSecretWatcher.class.getName());
+
+  private final Path file;
+  private final TkAesSerializer target;
+  private final WatchService watchService;
+  private String current;
+
+  private TkSecretWatcher(Path file, TkAesSerializer target) throws IOException {
+    this.file = file.toAbsolutePath();
+    this.target = target;
+    this.watchService = this.file.getFileSystem().newWatchService();
+    this.file.getParent().register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+  }
+
+  /**
+   * Makes the current content of {@code file} the active key of {@code target} (a no-op if it
+   * already is), then starts watching it.
+   */
+  public static TkSecretWatcher watch(Path file, TkAesSerializer target) throws IOException {
+    final TkSecretWatcher watcher = new TkSecretWatcher(file, target);
+    watcher.reload();
+    final Thread thread = new Thread(watcher::run, "tksession-secret-watcher");
+    thread.setDaemon(true);
+    thread.start();
+    return watcher;
+  }
+
+  /** @return the trimmed content of {@code file} */
+  public static String readSecret(Path file) throws IOException {
+    return new String(Files.readAllBytes(file), UTF_8).trim();
+  }
+
+  @Override
+  public void close() throws IOException {
+    watchService.close();
+  }
+
+  private void run() {
+    try {
+      while (true) {
+        final WatchKey key = watchService.take();
+        key.pollEvents();
+        reload();
+        if (!key.reset()) {
+          LOGGER.warning(() -> "Stopped watching " + file + ", its directory is gone");
+          return;
+        }
+      }
+    } catch (ClosedWatchServiceException e) {
+      // closed
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  void reload() {
+    try {
+      final String secret = readSecret(file);
+      if (!secret.isEmpty() && !secret.equals(current)) {
+        target.rotate(secret);
+        current = secret;
+      }
+    } catch (IOException | UncheckedIOException | IllegalArgumentException e) {
+      LOGGER.log(Level.WARNING, e, () -> "Could not reload " + file + ", keeping the current keys");
+    }
+  }
+}
@@ -15,10 +15,69 @@ package com.github.erdanielli.tksession.serializer;
 
 import com.github.erdanielli.tksession.Session;
 
-/** @author erdanielli */
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A stage of the serialization chain. Stages hand each other slices of a shared array through
+ * {@link #write(Session, int)} and {@link #read(byte[], int, int)}; the plain array methods remain
+ * for callers (and implementations) that don't care about copies.
+ *
+ * @author erdanielli
+ */
 public interface TkSerializer {
 
   byte[] write(Session session);
 
   Session read(byte[] input);
+
+  /**
+   * Writes the session leaving at least {@code headroom} unused bytes before the position of the
+   * returned buffer, so that outer stages can prepend their header in place.
+   *
+   * @param session a required session
+   * @param headroom bytes to reserve before the serialized ones
+   * @return an array backed buffer whose remaining bytes are the serialized session; the array
+   *     belongs to the caller, including any bytes past the limit
+   */
+  default ByteBuffer write(Session session, int headroom) {
+    final byte[] bytes = write(session);
+    if (headroom == 0) {
+      return ByteBuffer.wrap(bytes);
+    }
+    final byte[] result = new byte[headroom + bytes.length];
+    System.arraycopy(bytes, 0, result, headroom, bytes.length);
+    return ByteBuffer.wrap(result, headroom, bytes.length);
+  }
+
+  /**
+   * Reads a session from a slice of {@code input}. The array may be retained by the returned
+   * session, so it must not be modified afterwards.
+   */
+  default Session read(byte[] input, int offset, int length) {
+    return read(
+        offset == 0 && length == input.length
+            ? input
+            : Arrays.copyOfRange(input, offset, offset + length));
+  }
+
+  /**
+   * Cheap look at the first bytes of a token, before reading it. Stages that write the expiry of
+   * sessions in clear text answer from it; the others don't know.
+   *
+   * @param input the token, or just its first bytes (at least 8 when the token is that long)
+   * @return true if the token certainly holds an expired session, false if it may not
+   */
+  default boolean expired(byte[] input, int offset, int length) {
+    return false;
+  }
+
+  /** @return the remaining bytes of {@code buffer}, copied only when they don't fill its array */
+  static byte[] toByteArray(ByteBuffer buffer) {
+    final int offset = buffer.arrayOffset() + buffer.position();
+    final byte[] array = buffer.array();
+    return offset == 0 && buffer.remaining() == array.length
+        ? array
+        : Arrays.copyOfRange(array, offset, offset + buffer.remaining());
+  }
 }
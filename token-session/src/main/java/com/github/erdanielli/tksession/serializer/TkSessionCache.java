@@ -0,0 +1,182 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+import com.github.erdanielli.tksession.RestoredTokenSession;
+import com.github.erdanielli.tksession.Session;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of restored sessions, keyed by the SHA-256 digest of their token. Clients often
+ * send the same token for a burst of requests, which then skip decoding and decryption: each one
+ * gets its own copy of the cached session, sharing only immutable (or still encoded) attribute
+ * values with it.
+ *
+ * <p>Entries are split over independently locked segments, each evicting its least recently used
+ * entry when full, and expire along with their session. Sessions holding mutable values that were
+ * already decoded aren't cached at all.
+ *
+ * <p>A cached token is no longer checked against the keys, so the cache must be {@link #clear()
+ * cleared} whenever one is retired: a {@link TkAesSerializer} given the cache does it on {@link
+ * TkAesSerializer#rotate(String) rotation}. Sessions read while clearing aren't cached.
+ *
+ * @author erdanielli
+ */
+public final class TkSessionCache {
+  private static final int MAX_SEGMENTS = 16;
+  private final Segment[] segments;
+  private final MessageDigest sha256;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final AtomicInteger clears = new AtomicInteger();
+
+  /** @param maximumSize how many sessions to keep, at most */
+  public TkSessionCache(int maximumSize) {
+    if (maximumSize < 1) {
+      throw new IllegalArgumentException("Cache size must be positive");
+    }
+    this.segments = new Segment[Integer.highestOneBit(Math.min(MAX_SEGMENTS, maximumSize))];
+    final int capacity = (maximumSize + segments.length - 1) / segments.length;
+    for (int i = 0; i < segments.length; i++) {
+      segments[i] = new Segment(capacity);
+    }
+    try {
+      this.sha256 = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * @param token the token as received
+   * @param reader restores the session when it isn't cached
+   * @return a session only the caller has access to
+   */
+  public Session get(String token, Function<String, Session> reader) {
+    final ByteBuffer key = digest(token);
+    final Segment segment = segments[key.get(0) & (segments.length - 1)];
+    final RestoredTokenSession cached = segment.get(key, System.currentTimeMillis());
+    if (cached != null) {
+      hits.increment();
+      return cached.copy();
+    }
+    misses.increment();
+    final int generation = clears.get();
+    final Session session = reader.apply(token);
+    if (session instanceof RestoredTokenSession && !session.expired()) {
+      final RestoredTokenSession copy = ((RestoredTokenSession) session).copy();
+      if (copy != null) {
+        segment.put(key, (RestoredTokenSession) session, () -> clears.get() == generation);
+        return copy;
+      }
+    }
+    return session;
+  }
+
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  public int size() {
+    int size = 0;
+    for (Segment segment : segments) {
+      size += segment.size();
+    }
+    return size;
+  }
+
+  public void clear() {
+    clears.incrementAndGet();
+    for (Segment segment : segments) {
+      segment.clear();
+    }
+  }
+
+  private ByteBuffer digest(String token) {
+    final MessageDigest digest;
+    try {
+      digest = (MessageDigest) sha256.clone();
+    } catch (CloneNotSupportedException e) {
+      throw new IllegalStateException(e);
+    }
+    return ByteBuffer.wrap(digest.digest(token.getBytes(StandardCharsets.ISO_8859_1)));
+  }
+
+  private static final class Segment {
+    private final Map<ByteBuffer, Entry> entries;
+
+    Segment(int capacity) {
+      this.entries =
+          new LinkedHashMap<ByteBuffer, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Entry> eldest) {
+              return size() > capacity;
+            }
+          };
+    }
+
+    synchronized RestoredTokenSession get(ByteBuffer key, long now) {
+      final Entry entry = entries.get(key);
+      if (entry == null) {
+        return null;
+      }
+      if (now >= entry.expiresAt) {
+        entries.remove(key);
+        return null;
+      }
+      return entry.session;
+    }
+
+    synchronized void put(ByteBuffer key, RestoredTokenSession session, BooleanSupplier current) {
+      if (current.getAsBoolean()) {
+        entries.put(key, new Entry(session));
+      }
+    }
+
+    synchronized int size() {
+      return entries.size();
+    }
+
+    synchronized void clear() {
+      entries.clear();
+    }
+  }
+
+  private static final class Entry {
+    final RestoredTokenSession session;
+    final long expiresAt;
+
+    Entry(RestoredTokenSession session) {
+      this.session = session;
+      this.expiresAt =
+          session.getMaxInactiveInterval() == 0
+              ? Long.MAX_VALUE
+              : session.getLastAccessedTime() + session.getMaxInactiveInterval() * 1_000L;
+    }
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cheap checks of incoming tokens, before anything decodes them: length bounds, base64 alphabet
+ * and padding. Rejections throw a preallocated {@link InvalidTokenException}, without stack trace,
+ * and are counted by {@link Reason}.
+ *
+ * @author erdanielli
+ */
+public final class TkTokenGuard {
+  /** Enough for the largest chunked cookies. */
+  public static final int DEFAULT_MAX_LENGTH = 32 * 1024;
+  /** Below any encrypted or signed token. */
+  public static final int DEFAULT_MIN_LENGTH = 24;
+
+  public enum Reason {
+    TOO_SHORT,
+    TOO_LONG,
+    ILLEGAL_CHARACTER,
+    MALFORMED
+  }
+
+  private static final InvalidTokenException[] REJECTIONS = new InvalidTokenException[4];
+
+  static {
+    for (Reason reason : Reason.values()) {
+      REJECTIONS[reason.ordinal()] = new InvalidTokenException("Token rejected: " + reason);
+    }
+  }
+
+  private final int minLength;
+  private final int maxLength;
+  private final LongAdder[] rejected = new LongAdder[REJECTIONS.length];
+
+  public TkTokenGuard() {
+    this(DEFAULT_MIN_LENGTH, DEFAULT_MAX_LENGTH);
+  }
+
+  /** @param minLength shortest token accepted, in characters */
+  public TkTokenGuard(int minLength, int maxLength) {
+    if (minLength < 0 || maxLength < minLength) {
+      throw new IllegalArgumentException("Invalid token length bounds");
+    }
+    this.minLength = minLength;
+    this.maxLength = maxLength;
+    for (int i = 0; i < rejected.length; i++) {
+      rejected[i] = new LongAdder();
+    }
+  }
+
+  /** @throws InvalidTokenException if {@code token} can't be a valid token */
+  public void check(String token) {
+    final int length = token.length();
+    if (length > maxLength) {
+      reject(Reason.TOO_LONG);
+    }
+    if (length < minLength) {
+      reject(Reason.TOO_SHORT);
+    }
+    int end = length;
+    while (end > 0 && token.charAt(end - 1) == '=') {
+      end--;
+    }
+    if (end % 4 == 1 || length - end > 2 || (end < length && length % 4 != 0)) {
+      reject(Reason.MALFORMED);
+    }
+    for (int i = 0; i < end; i++) {
+      if (!Base64Codec.isAlphabet(token.charAt(i))) {
+        reject(Reason.ILLEGAL_CHARACTER);
+      }
+    }
+  }
+
+  /**
+   * Keeps servers from issuing tokens they would reject on the next request.
+   *
+   * @throws IllegalStateException if {@code token} is longer than accepted
+   */
+  public void checkWritable(String token) {
+    if (token.length() > maxLength) {
+      throw new IllegalStateException(
+          "Token of " + token.length() + " characters exceeds the maximum of " + maxLength);
+    }
+  }
+
+  public long getRejectedCount(Reason reason) {
+    return rejected[reason.ordinal()].sum();
+  }
+
+  private void reject(Reason reason) {
+    rejected[reason.ordinal()].increment();
+    throw REJECTIONS[reason.ordinal()];
+  }
+}
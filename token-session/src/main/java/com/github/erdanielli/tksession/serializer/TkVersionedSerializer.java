@@ -0,0 +1,83 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+import com.github.erdanielli.tksession.Session;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Prefixes what an engine writes with a header byte: the envelope {@link #VERSION} in the 3 upper
+ * bits and the engine id in the 5 lower ones. Reading dispatches on that byte, so nodes writing a
+ * newer format and nodes still writing the previous one can share live tokens.
+ *
+ * <p>Tokens written before version headers may be read by a legacy serializer, when their first
+ * byte isn't a known header. That is always the case for {@link TkJdkSerializer} tokens, which
+ * start with the serialization stream magic, but not for {@link TkCompactSerializer} ones, which
+ * start with a random byte: a few of those would be read by the wrong engine.
+ *
+ * @author erdanielli
+ * @see TkVersionedSerializerBuilder
+ */
+public final class TkVersionedSerializer implements TkSerializer {
+  public static final int VERSION = 1;
+  public static final int JDK = 1;
+  public static final int COMPACT = 2;
+  /** Highest engine id. */
+  public static final int MAX_ENGINE_ID = 31;
+
+  private final TkSerializer[] engines;
+  private final TkSerializer writer;
+  private final byte header;
+  private final TkSerializer legacy;
+
+  /** @param engines by id, from 1 to {@link #MAX_ENGINE_ID} */
+  TkVersionedSerializer(TkSerializer[] engines, int writerId, TkSerializer legacy) {
+    this.engines = engines;
+    this.writer = engines[writerId];
+    this.header = (byte) (VERSION << 5 | writerId);
+    this.legacy = legacy;
+  }
+
+  @Override
+  public byte[] write(Session session) {
+    return TkSerializer.toByteArray(write(session, 0));
+  }
+
+  @Override
+  public ByteBuffer write(Session session, int headroom) {
+    final ByteBuffer written = writer.write(session, headroom + 1);
+    final int start = written.arrayOffset() + written.position() - 1;
+    written.array()[start] = header;
+    return ByteBuffer.wrap(written.array(), start, written.remaining() + 1);
+  }
+
+  @Override
+  public Session read(byte[] input) {
+    return read(input, 0, input.length);
+  }
+
+  @Override
+  public Session read(byte[] input, int offset, int length) {
+    final int first = length == 0 ? 0 : input[offset] & 0xFF;
+    final TkSerializer engine = first >>> 5 == VERSION ? engines[first & MAX_ENGINE_ID] : null;
+    if (engine != null) {
+      return engine.read(input, offset + 1, length - 1);
+    }
+    if (legacy == null) {
+      throw new IllegalArgumentException("Unsupported token format: " + first);
+    }
+    return legacy.read(input, offset, length);
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+/** @author erdanielli */
+public final class TkVersionedSerializerBuilder {
+  private final TkSerializer[] engines = new TkSerializer[TkVersionedSerializer.MAX_ENGINE_ID + 1];
+  private int writerId;
+  private TkSerializer legacy;
+
+  /**
+   * Adds an engine, such as {@link TkVersionedSerializer#JDK} or {@link
+   * TkVersionedSerializer#COMPACT}. The last one added writes, all of them read.
+   *
+   * @throws IllegalArgumentException if the id is out of range or already taken
+   */
+  public TkVersionedSerializerBuilder add(int engineId, TkSerializer engine) {
+    if (engineId < 1 || engineId > TkVersionedSerializer.MAX_ENGINE_ID) {
+      throw new IllegalArgumentException("Invalid engine id: " + engineId);
+    }
+    if (engines[engineId] != null) {
+      throw new IllegalArgumentException("Duplicated engine id " + engineId);
+    }
+    engines[engineId] = engine;
+    writerId = engineId;
+    return this;
+  }
+
+  /** Keeps reading tokens written without version header. */
+  public TkVersionedSerializerBuilder legacy(TkSerializer serializer) {
+    legacy = serializer;
+    return this;
+  }
+
+  /** @throws IllegalArgumentException if there is no engine */
+  public TkVersionedSerializer build() {
+    if (writerId == 0) {
+      throw new IllegalArgumentException("No engine");
+    }
+    return new TkVersionedSerializer(engines.clone(), writerId, legacy);
+  }
+}
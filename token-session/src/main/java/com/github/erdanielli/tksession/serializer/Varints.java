@@ -0,0 +1,67 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+/**
+ * Unsigned LEB128 helpers for fixed buffers. {@link CompactOutput} and {@link CompactInput} have
+ * their own stream flavored versions.
+ *
+ * @author erdanielli
+ */
+final class Varints {
+
+  private Varints() {}
+
+  static int size(int value) {
+    int size = 1;
+    int v = value >>> 7;
+    while (v != 0) {
+      size++;
+      v >>>= 7;
+    }
+    return size;
+  }
+
+  /** @return the position right after the written value */
+  static int write(byte[] dst, int pos, int value) {
+    int p = pos;
+    int v = value;
+    while ((v & ~0x7F) != 0) {
+      dst[p++] = (byte) ((v & 0x7F) | 0x80);
+      v >>>= 7;
+    }
+    dst[p++] = (byte) v;
+    return p;
+  }
+
+  /**
+   * Reads a non-negative value, taking {@link #size(int)} bytes.
+   *
+   * @throws IllegalArgumentException if malformed or if {@code end} is reached first
+   */
+  static int read(byte[] src, int pos, int end) {
+    int result = 0;
+    for (int p = pos, shift = 0; p < end && shift < 32; p++, shift += 7) {
+      final int b = src[p];
+      result |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        if (result < 0) {
+          break;
+        }
+        return result;
+      }
+    }
+    throw new IllegalArgumentException("Malformed varint");
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer.security;
+
+import com.github.erdanielli.tksession.serializer.TkAttributeCodecs;
+import com.github.erdanielli.tksession.serializer.TkAttributeStore;
+import com.github.erdanielli.tksession.serializer.TkCompactSerializer;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * Same as {@link SecurityContextSerializer}, on top of the {@link TkCompactSerializer} format.
+ *
+ * @author erdanielli
+ */
+public final class CompactSecurityContextSerializer extends TkCompactSerializer {
+
+  public CompactSecurityContextSerializer() {
+    super();
+  }
+
+  public CompactSecurityContextSerializer(TkAttributeCodecs codecs) {
+    super(codecs);
+  }
+
+  public CompactSecurityContextSerializer(
+      TkAttributeCodecs codecs, TkAttributeStore store, int threshold) {
+    super(codecs, store, threshold);
+  }
+
+  @Override
+  protected void writeAttribute(ObjectOutput output, String name, Object value) throws IOException {
+    if (SecurityContextAttribute.NAME.equals(name)) {
+      SecurityContextAttribute.write(output, value);
+    } else {
+      super.writeAttribute(output, name, value);
+    }
+  }
+
+  @Override
+  protected Object readAttribute(ObjectInput input, String name) throws IOException {
+    if (SecurityContextAttribute.NAME.equals(name)) {
+      return SecurityContextAttribute.read(input);
+    }
+    return super.readAttribute(input, name);
+  }
+}
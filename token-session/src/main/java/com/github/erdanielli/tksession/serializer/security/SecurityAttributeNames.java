@@ -0,0 +1,39 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer.security;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Session attributes written by Spring Security, meant for {@link
+ * com.github.erdanielli.tksession.serializer.TkAttributeCodecsBuilder#addNames(java.util.Collection)}.
+ *
+ * @author erdanielli
+ */
+public final class SecurityAttributeNames {
+
+  /** Never reorder: append new names at the end. */
+  public static final List<String> ALL =
+      Collections.unmodifiableList(
+          Arrays.asList(
+              SecurityContextAttribute.NAME,
+              "SPRING_SECURITY_SAVED_REQUEST",
+              "SPRING_SECURITY_LAST_EXCEPTION",
+              "SPRING_SECURITY_LAST_USERNAME",
+              "org.springframework.security.web.csrf.HttpSessionCsrfTokenRepository.CSRF_TOKEN"));
+
+  private SecurityAttributeNames() {}
+}
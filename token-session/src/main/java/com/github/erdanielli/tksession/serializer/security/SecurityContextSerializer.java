@@ -14,29 +14,18 @@
 package com.github.erdanielli.tksession.serializer.security;
 
 import com.github.erdanielli.tksession.serializer.TkJdkSerializer;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.context.SecurityContext;
-import org.springframework.security.core.context.SecurityContextImpl;
 
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
-import java.security.Principal;
-
-import static com.github.erdanielli.tksession.serializer.SuppressedExceptions.readObject;
-import static java.util.Collections.emptyList;
-import static org.springframework.security.core.authority.AuthorityUtils.commaSeparatedStringToAuthorityList;
 
 /** @author erdanielli */
 public final class SecurityContextSerializer extends TkJdkSerializer {
 
   @Override
   protected void writeAttribute(ObjectOutput output, String name, Object value) throws IOException {
-    if ("SPRING_SECURITY_CONTEXT".equals(name)) {
-      output.writeObject(name);
-      writeAuth(output, ((SecurityContext) value).getAuthentication());
+    if (SecurityContextAttribute.NAME.equals(name)) {
+      SecurityContextAttribute.write(output, value);
     } else {
       super.writeAttribute(output, name, value);
     }
@@ -44,49 +33,9 @@ public final class SecurityContextSerializer extends TkJdkSerializer {
 
   @Override
   protected Object readAttribute(ObjectInput input, String name) throws IOException {
-    if ("SPRING_SECURITY_CONTEXT".equals(name)) {
-      return new SecurityContextImpl(readAuth(input));
+    if (SecurityContextAttribute.NAME.equals(name)) {
+      return SecurityContextAttribute.read(input);
     }
     return super.readAttribute(input, name);
   }
-
-  private void writeAuth(ObjectOutput output, Authentication authentication) throws IOException {
-    if (authentication == null) {
-      output.writeBoolean(true);
-    } else {
-      output.writeBoolean(false);
-      output.writeObject(authentication.getName());
-      final String authList =
-          authentication.getAuthorities().stream()
-              .map(GrantedAuthority::getAuthority)
-              .reduce((a, b) -> a + "," + b)
-              .orElse(" ");
-      output.writeObject(authList);
-    }
-  }
-
-  private Authentication readAuth(ObjectInput input) throws IOException {
-    if (input.readBoolean()) {
-      return null;
-    }
-    final Principal principal = new PrincipalImpl(readObject(input));
-    final String authList = ((String) readObject(input)).trim();
-    return authList.isEmpty()
-        ? new UsernamePasswordAuthenticationToken(principal, null, emptyList())
-        : new UsernamePasswordAuthenticationToken(
-            principal, null, commaSeparatedStringToAuthorityList(authList));
-  }
-
-  private class PrincipalImpl implements Principal {
-    private final String username;
-
-    PrincipalImpl(String username) {
-      this.username = username;
-    }
-
-    @Override
-    public String getName() {
-      return username;
-    }
-  }
 }
@@ -48,6 +48,7 @@ class SpecCompleteSession_InvalidationTest {
     shouldThrow(session::getLastAccessedTime, "getLastAccessedTime");
     shouldThrow(() -> session.getAttribute("attr"), "getAttribute(String)");
     shouldThrow(session::getAttributeNames, "getAttributeNames");
+    shouldThrow(() -> session.getEncodedAttribute("attr"), "getEncodedAttribute(String)");
     shouldThrow(() -> session.setAttribute("name", 1), "setAttribute(String,Object)");
     shouldThrow(() -> session.removeAttribute("name"), "removeAttribute(String)");
     shouldThrow(session::invalidate, "invalidate");
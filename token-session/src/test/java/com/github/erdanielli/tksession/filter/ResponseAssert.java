@@ -52,6 +52,14 @@ final class ResponseAssert extends AbstractAssert<ResponseAssert, MockHttpServle
     return this;
   }
 
+  ResponseAssert hasToken(String expected) {
+    final String tokenValue = (String) actual.getHeaderValue("X-SESSION");
+    if (!expected.equals(tokenValue)) {
+      failWithMessage("Expected token '%s', got '%s'", expected, tokenValue);
+    }
+    return this;
+  }
+
   ResponseAssert doesNotHaveToken() {
     final String tokenValue = (String) actual.getHeaderValue("X-SESSION");
     if (tokenValue != null) {
@@ -0,0 +1,93 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.filter;
+
+import com.github.erdanielli.tksession.serializer.InvalidTokenException;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.Cookie;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/** @author erdanielli */
+class TkCookieTransportTest {
+  private final TkCookieTransport transport =
+      new TkCookieTransportBuilder().name("TK").sameSite("Strict").chunks(4, 3).build();
+  private final MockHttpServletRequest request = new MockHttpServletRequest();
+  private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+  @Test
+  void shouldWriteCookieAttributes() {
+    transport.write(request, response, "abc");
+    assertThat(response.getHeaders("Set-Cookie"))
+        .containsExactly("TK=abc; Path=/; Secure; HttpOnly; SameSite=Strict");
+  }
+
+  @Test
+  void shouldSplitLargeTokensExpiringStaleChunks() {
+    request.setCookies(
+        new Cookie("TK", "old"), new Cookie("TK-2", "old"), new Cookie("OTHER", "kept"));
+    transport.write(request, response, "abcdefgh");
+    assertThat(response.getHeaders("Set-Cookie"))
+        .filteredOn(cookie -> !cookie.contains("Max-Age=0"))
+        .containsExactly(
+            "TK-0=abcd; Path=/; Secure; HttpOnly; SameSite=Strict",
+            "TK-1=efgh; Path=/; Secure; HttpOnly; SameSite=Strict");
+    assertThat(response.getCookies())
+        .filteredOn(cookie -> cookie.getMaxAge() == 0)
+        .extracting(Cookie::getName)
+        .containsExactlyInAnyOrder("TK", "TK-2");
+    assertThatThrownBy(() -> transport.write(request, response, "abcdefghijklm"))
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  void shouldJoinChunks() {
+    request.setCookies(new Cookie("TK-1", "efgh"), new Cookie("TK-0", "abcd"));
+    assertThat(transport.read(request)).isEqualTo("abcdefgh");
+    request.setCookies(new Cookie("TK", "single"), new Cookie("TK-0", "abcd"));
+    assertThat(transport.read(request)).isEqualTo("single");
+    request.setCookies(new Cookie("OTHER", "abcd"));
+    assertThat(transport.read(request)).isNull();
+  }
+
+  @Test
+  void shouldRejectTooManyChunks() {
+    request.setCookies(
+        new Cookie("TK-0", "a"),
+        new Cookie("TK-1", "b"),
+        new Cookie("TK-2", "c"),
+        new Cookie("TK-3", "d"));
+    assertThatThrownBy(() -> transport.read(request)).isInstanceOf(InvalidTokenException.class);
+    request.setCookies(new Cookie("TK-0", "abcdefghijklm"));
+    assertThatThrownBy(() -> transport.read(request)).isInstanceOf(InvalidTokenException.class);
+  }
+
+  @Test
+  void shouldExpireCookiesWhenDiscarded() {
+    request.setCookies(new Cookie("TK", "old"));
+    transport.discard(request, response);
+    assertThat(response.getCookies()).hasSize(1);
+    assertThat(response.getCookie("TK").getMaxAge()).isZero();
+  }
+
+  @Test
+  void shouldRejectInsecureCrossSiteCookies() {
+    assertThatThrownBy(() -> new TkCookieTransportBuilder().secure(false).sameSite("None").build())
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
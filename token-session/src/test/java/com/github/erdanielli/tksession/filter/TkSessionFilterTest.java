@@ -13,25 +13,34 @@
  */
 package com.github.erdanielli.tksession.filter;
 
+import com.github.erdanielli.tksession.RestoredTokenSession;
+import com.github.erdanielli.tksession.listener.SessionListenerNotifierBuilder;
 import com.github.erdanielli.tksession.serializer.TkAesSerializer;
 import com.github.erdanielli.tksession.serializer.TkBase64Serializer;
 import com.github.erdanielli.tksession.serializer.TkJdkSerializer;
+import com.github.erdanielli.tksession.serializer.TkKeyRingBuilder;
+import com.github.erdanielli.tksession.serializer.TkTokenGuard;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
 
 import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 import java.io.IOException;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.UUID;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 import static java.lang.Thread.sleep;
-import static java.util.Optional.ofNullable;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.util.Collections.emptyMap;
 import static org.assertj.core.api.Assertions.fail;
 
 @SuppressWarnings("ConstantConditions")
@@ -143,6 +152,107 @@ class TkSessionFilterTest {
         .destroyedSessions(0);
   }
 
+  @Test
+  void shouldGuardTokensBeforeDecoding() {
+    final TkTokenGuard guard = new TkTokenGuard();
+    filter =
+        new TkSessionFilter(
+            notifier,
+            Duration.ofMinutes(5L),
+            new TkHeaderTransport("X-SESSION"),
+            new TkBase64Serializer(new TkAesSerializer("secr3t", new TkJdkSerializer())),
+            Duration.ZERO,
+            guard);
+    assertAfterRequest(session -> session.setAttribute("count", 1)).isOk().hasToken();
+    prepareNextRequest();
+    assertAfterRequest(session -> session.setAttribute("count", 2)).isOk().hasToken();
+
+    request = new MockHttpServletRequest();
+    response = new MockHttpServletResponse();
+    request.addHeader("X-SESSION", String.join("", Collections.nCopies(8, "<script>")));
+    assertAfterRequest(session -> fail("Should not restore the session"))
+        .isFailure(400, "INVALID_SESSION_TOKEN")
+        .createdSessions(1);
+    Assertions.assertThat(guard.getRejectedCount(TkTokenGuard.Reason.ILLEGAL_CHARACTER))
+        .isEqualTo(1);
+  }
+
+  @Test
+  void shouldExpireCookiesRejectedByTheGuard() {
+    filter =
+        new TkSessionFilter(
+            notifier,
+            Duration.ofMinutes(5L),
+            new TkCookieTransportBuilder().name("TK").build(),
+            new TkBase64Serializer(new TkAesSerializer("secr3t", new TkJdkSerializer()), true),
+            Duration.ZERO,
+            new TkTokenGuard());
+    request.setCookies(new Cookie("TK", "not-a-token"));
+    assertAfterRequest(session -> fail("Should not restore the session"))
+        .isFailure(400, "INVALID_SESSION_TOKEN")
+        .createdSessions(0);
+    Assertions.assertThat(response.getCookie("TK").getMaxAge()).isZero();
+  }
+
+  @Test
+  void shouldNotWriteTokensTheGuardWouldReject() {
+    filter =
+        new TkSessionFilter(
+            notifier,
+            Duration.ofMinutes(5L),
+            new TkHeaderTransport("X-SESSION"),
+            new TkBase64Serializer(new TkAesSerializer("secr3t", new TkJdkSerializer())),
+            Duration.ZERO,
+            new TkTokenGuard(TkTokenGuard.DEFAULT_MIN_LENGTH, 1024));
+    assertAfterRequest(session -> session.setAttribute("small", "x")).isOk().hasToken();
+    prepareNextRequest();
+    final String large = String.join("", Collections.nCopies(1024, "x"));
+    Assertions.assertThatThrownBy(
+            () ->
+                filter.doFilter(
+                    request,
+                    response,
+                    new Endpoint() {
+                      @Override
+                      void execute(HttpServletRequest request, HttpServletResponse response) {
+                        request.getSession().setAttribute("large", large);
+                      }
+                    }))
+        .hasRootCauseInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("exceeds the maximum of 1024");
+    Assertions.assertThat(response.getHeader("X-SESSION")).isNull();
+  }
+
+  @Test
+  void shouldSkipExpiredTokensUnlessDestructionIsNotified() {
+    final TkBase64Serializer serializer =
+        new TkBase64Serializer(
+            new TkAesSerializer(
+                new TkKeyRingBuilder().add("secr3t").build(), new TkJdkSerializer()));
+    final long past = System.currentTimeMillis() - 10_000;
+    final byte[] expired =
+        serializer.write(new RestoredTokenSession(UUID.randomUUID(), past, past, 1, emptyMap()));
+    expired[expired.length - 3] ^= 1;
+    final String token = new String(expired, ISO_8859_1);
+    filter =
+        new TkSessionFilter(
+            new SessionListenerNotifierBuilder().build(),
+            Duration.ofSeconds(1L),
+            "X-SESSION",
+            serializer);
+    request.addHeader("X-SESSION", token);
+    assertAfterRequest((req, resp) -> req.getSession(true)).isOk().hasToken();
+    Assertions.assertThat(response.getHeader("X-SESSION")).isNotEqualTo(token);
+
+    filter = new TkSessionFilter(notifier, Duration.ofSeconds(1L), "X-SESSION", serializer);
+    request = new MockHttpServletRequest();
+    request.addHeader("X-SESSION", token);
+    response = new MockHttpServletResponse();
+    assertAfterRequest((req, resp) -> req.getSession(true))
+        .isFailure(400, "INVALID_SESSION_TOKEN")
+        .createdSessions(0);
+  }
+
   @Test
   void shouldRethrowUnexpectedException() {
     Assertions.assertThatThrownBy(
@@ -187,6 +297,117 @@ class TkSessionFilterTest {
         .destroyedSessions(0);
   }
 
+  @Test
+  void shouldEchoUnchangedTokenWithinRefreshGranularity() {
+    filter =
+        new TkSessionFilter(
+            notifier,
+            Duration.ofMinutes(5L),
+            "X-SESSION",
+            new TkBase64Serializer(new TkAesSerializer("secr3t", new TkJdkSerializer())),
+            Duration.ofMinutes(1L));
+    assertAfterRequest(
+            session -> {
+              session.setAttribute("count", 1);
+              session.setAttribute("list", new ArrayList<>());
+            })
+        .isOk()
+        .hasToken();
+    final String token = response.getHeader("X-SESSION");
+    prepareNextRequest();
+    assertAfterRequest(session -> session.getAttribute("count")).isOk().hasToken(token);
+    prepareNextRequest();
+    assertAfterRequest(session -> session.removeAttribute("missing")).isOk().hasToken(token);
+    prepareNextRequest();
+    assertAfterRequest(session -> session.getAttribute("list")).isOk().hasToken();
+    Assertions.assertThat(response.getHeader("X-SESSION")).isNotEqualTo(token);
+    prepareNextRequest();
+    assertAfterRequest(session -> session.setAttribute("count", 2)).isOk().hasToken();
+    Assertions.assertThat(response.getHeader("X-SESSION")).isNotEqualTo(token);
+  }
+
+  @Test
+  void shouldSplitLargeTokensOverNumberedHeaders() {
+    filter =
+        new TkSessionFilter(
+            notifier,
+            Duration.ofMinutes(5L),
+            new TkHeaderTransport("X-SESSION", 500, 20),
+            new TkBase64Serializer(new TkAesSerializer("secr3t", new TkJdkSerializer())),
+            Duration.ZERO);
+    final String large = String.join("", Collections.nCopies(2000, "x"));
+    assertAfterRequest(session -> session.setAttribute("large", "small")).isOk().hasToken();
+    prepareNextRequest();
+    assertAfterRequest(session -> session.setAttribute("large", large))
+        .isOk()
+        .doesNotHaveToken();
+    Assertions.assertThat(response.getHeaderNames())
+        .contains("X-SESSION-0", "X-SESSION-5")
+        .doesNotContain("X-SESSION-20");
+    prepareNextRequest();
+    assertAfterRequest(
+            session -> Assertions.assertThat(session.getAttribute("large")).isEqualTo(large))
+        .isOk();
+    prepareNextRequest();
+    for (int i = 0; i <= 20; i++) {
+      request.addHeader("X-SESSION-" + i, "AAAA");
+    }
+    assertAfterRequest(session -> fail("Should not restore the session"))
+        .isFailure(400, "INVALID_SESSION_TOKEN");
+  }
+
+  @Test
+  void shouldWriteBackToTheTransportTheTokenCameFrom() {
+    filter =
+        new TkSessionFilter(
+            notifier,
+            Duration.ofMinutes(5L),
+            TkTransport.firstOf(
+                new TkCookieTransportBuilder().name("TK").build(),
+                new TkHeaderTransport("X-SESSION")),
+            new TkBase64Serializer(new TkAesSerializer("secr3t", new TkJdkSerializer()), true),
+            Duration.ZERO);
+    assertAfterRequest(session -> session.setAttribute("name", "John")).isOk().hasToken();
+    final String cookie = response.getHeader("Set-Cookie");
+    Assertions.assertThat(cookie).startsWith("TK=");
+
+    request = new MockHttpServletRequest();
+    response = new MockHttpServletResponse();
+    request.setCookies(new Cookie("TK", cookie.substring(3, cookie.indexOf(';'))));
+    request.addHeader("X-SESSION", "ignored");
+    assertAfterRequest(
+            session -> Assertions.assertThat(session.getAttribute("name")).isEqualTo("John"))
+        .isOk()
+        .doesNotHaveToken();
+    Assertions.assertThat(response.getHeader("Set-Cookie")).startsWith("TK=");
+
+    request = new MockHttpServletRequest();
+    response = new MockHttpServletResponse();
+    request.setCookies(new Cookie("TK", "garbage"));
+    assertAfterRequest(HttpSession::getCreationTime).isFailure(400, "INVALID_SESSION_TOKEN");
+    Assertions.assertThat(response.getCookie("TK").getMaxAge()).isZero();
+  }
+
+  @Test
+  void shouldExpireCookiesRejectedBeforeDecoding() {
+    filter =
+        new TkSessionFilter(
+            notifier,
+            Duration.ofMinutes(5L),
+            new TkCookieTransportBuilder().name("TK").chunks(4, 2).build(),
+            new TkBase64Serializer(new TkAesSerializer("secr3t", new TkJdkSerializer()), true),
+            Duration.ZERO);
+    request.setCookies(
+        new Cookie("TK-0", "abcd"), new Cookie("TK-1", "efgh"), new Cookie("TK-2", "ijkl"));
+    assertAfterRequest(session -> fail("Should not restore the session"))
+        .isFailure(400, "INVALID_SESSION_TOKEN")
+        .createdSessions(0);
+    Assertions.assertThat(response.getCookies())
+        .allMatch(cookie -> cookie.getMaxAge() == 0)
+        .extracting(Cookie::getName)
+        .containsExactlyInAnyOrder("TK-0", "TK-1", "TK-2");
+  }
+
   private ResponseAssert assertAfterRequest(
       BiConsumer<HttpServletRequest, HttpServletResponse> endpoint) {
     return assertAfterRequest(
@@ -219,7 +440,9 @@ class TkSessionFilterTest {
 
   private void prepareNextRequest() {
     request = new MockHttpServletRequest();
-    ofNullable(response.getHeader("X-SESSION")).ifPresent(tk -> request.addHeader("X-SESSION", tk));
+    response.getHeaderNames().stream()
+        .filter(name -> name.startsWith("X-SESSION"))
+        .forEach(name -> request.addHeader(name, response.getHeader(name)));
     response = new MockHttpServletResponse();
   }
 }
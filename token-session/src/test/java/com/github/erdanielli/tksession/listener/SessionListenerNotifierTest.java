@@ -23,6 +23,7 @@ import java.util.Objects;
 import java.util.UUID;
 
 import static java.util.Collections.emptyMap;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
 
 /** @author erdanielli */
@@ -54,6 +55,18 @@ class SessionListenerNotifierTest {
     verify(httpSessionListener).sessionDestroyed(eventExpected(session));
   }
 
+  @Test
+  void shouldTellWhetherDestructionIsNotified() {
+    assertThat(notifier.notifiesDestruction()).isTrue();
+    assertThat(new SessionListenerNotifierBuilder().build().notifiesDestruction()).isFalse();
+    assertThat(
+            new SessionListenerNotifierBuilder()
+                .add(httpSessionAttributeListener)
+                .build()
+                .notifiesDestruction())
+        .isFalse();
+  }
+
   @Test
   void shouldNotifyWhenAttributesChange() {
     final Session session = notifier.observe(new NewSession());
@@ -13,6 +13,27 @@
  */
 package com.github.erdanielli.tksession.serializer;
 
+import com.github.erdanielli.tksession.Session;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
 /** @author erdanielli */
 class TkAesSerializerTest extends TkSerializerSpec {
 
@@ -20,4 +41,88 @@ class TkAesSerializerTest extends TkSerializerSpec {
   protected TkSerializer createTkSerializer() {
     return new TkAesSerializer("s3cret", new TkJdkSerializer());
   }
+
+  @Test
+  void shouldEncryptAndDecryptConcurrently() throws Exception {
+    final TkSerializer serializer = createTkSerializer();
+    final ExecutorService executor = Executors.newFixedThreadPool(16);
+    try {
+      final List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < 64; i++) {
+        final String value = "value" + i;
+        futures.add(
+            executor.submit(
+                () -> {
+                  for (int j = 0; j < 50; j++) {
+                    final Session session = newSession();
+                    session.setAttribute("foo", value);
+                    assertEquals(serializer.read(serializer.write(session)), session);
+                  }
+                }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void shouldReuseIdleCiphers() {
+    final InstancePool<Cipher> pool =
+        new InstancePool<>(() -> JcaCipherSuite.aesGcm(null).ciphers().acquire().cipher(), 2);
+    final Cipher first = pool.acquire();
+    final Cipher second = pool.acquire();
+    assertThat(second).isNotSameAs(first);
+    pool.release(first);
+    pool.release(second);
+    pool.release(pool.acquire());
+    assertThat(pool.acquire()).isIn(first, second);
+  }
+
+  @Test
+  void shouldRejectTamperedTokens() {
+    final TkSerializer serializer = createTkSerializer();
+    final byte[] token = serializer.write(newSession());
+    assertThatThrownBy(() -> serializer.read(token, 0, 31))
+        .isInstanceOf(IllegalArgumentException.class);
+    token[token.length - 1] ^= 1;
+    assertThatThrownBy(() -> serializer.read(token))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("AES decryption failed");
+  }
+
+  @Test
+  void shouldUseDistinct96BitNonces() {
+    final Session session = newSession();
+    final byte[] plain = new TkJdkSerializer().write(session);
+    for (TkNonceGenerator nonces :
+        Arrays.asList(TkNonceGenerator.counter(), TkNonceGenerator.secureRandom())) {
+      final TkSerializer serializer = new TkAesSerializer("s3cret", new TkJdkSerializer(), nonces);
+      final Set<String> seen = new HashSet<>();
+      for (int i = 0; i < 100; i++) {
+        final byte[] token = serializer.write(session);
+        assertThat(token).hasSize(16 + plain.length + 16).startsWith(0, 0, 0, 0);
+        assertThat(seen.add(new String(token, 4, 12, ISO_8859_1))).isTrue();
+        assertEquals(serializer.read(token), session);
+      }
+    }
+  }
+
+  @Test
+  void shouldReadTokensWithLegacy128BitIv() throws Exception {
+    final Session session = newSession();
+    final byte[] plain = new TkJdkSerializer().write(session);
+    final byte[] key =
+        Arrays.copyOf(MessageDigest.getInstance("MD5").digest("s3cret".getBytes(UTF_8)), 16);
+    final byte[] iv = new byte[16];
+    Arrays.fill(iv, (byte) 7);
+    final Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+    cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new GCMParameterSpec(128, iv));
+    final byte[] encrypted = cipher.doFinal(plain);
+    final byte[] token = Arrays.copyOf(iv, 16 + encrypted.length);
+    System.arraycopy(encrypted, 0, token, 16, encrypted.length);
+    assertEquals(createTkSerializer().read(token), session);
+  }
 }
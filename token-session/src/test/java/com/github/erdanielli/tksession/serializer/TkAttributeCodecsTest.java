@@ -0,0 +1,226 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+import com.github.erdanielli.tksession.Session;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/** @author erdanielli */
+class TkAttributeCodecsTest extends TkSerializerSpec {
+  private TkAttributeCodecs codecs =
+      new TkAttributeCodecsBuilder().add(new PointCodec()).add("zip", new ZipCodec()).build();
+
+  @Override
+  protected TkSerializer createTkSerializer() {
+    return new TkCompactSerializer(codecs);
+  }
+
+  @Test
+  void shouldSupportBuiltInTypes() {
+    final Map<String, Object> values = new HashMap<>();
+    values.put("string", "Foo");
+    values.put("boolean", true);
+    values.put("byte", (byte) -3);
+    values.put("short", (short) 1234);
+    values.put("char", 'x');
+    values.put("int", -37);
+    values.put("long", Long.MIN_VALUE);
+    values.put("float", 1.5f);
+    values.put("double", Math.PI);
+    values.put("uuid", UUID.randomUUID());
+    values.put("enum", ChronoUnit.DAYS);
+    values.put("instant", Instant.now());
+    values.put("duration", Duration.ofMillis(-1_500));
+    values.put("localDate", LocalDate.now());
+    values.put("localTime", LocalTime.now());
+    values.put("localDateTime", LocalDateTime.now());
+    values.put("list", new ArrayList<>(Arrays.asList(1, "two", null)));
+    values.put("set", new HashSet<>(Arrays.asList(1L, 2L)));
+    values.put("linkedSet", new LinkedHashSet<>(Arrays.asList("b", "a")));
+    final Map<String, Object> nested = new LinkedHashMap<>();
+    nested.put("inner", new HashMap<>(values));
+    values.put("map", nested);
+
+    final Session session = newSession();
+    values.forEach(session::setAttribute);
+    session.setAttribute("bytes", new byte[] {1, 2, 3});
+
+    final Session restored = writeThenRead(session);
+    assertThat(restored.attributes()).containsAllEntriesOf(values);
+    assertThat((byte[]) restored.getAttribute("bytes")).containsExactly(1, 2, 3);
+  }
+
+  @Test
+  void shouldNotUseJavaSerializationForBuiltInTypes() {
+    final Session session = newSession();
+    session.setAttribute("id", UUID.randomUUID());
+    session.setAttribute("unit", ChronoUnit.DAYS);
+    session.setAttribute("since", Instant.now());
+    final byte[] bytes = createTkSerializer().write(session);
+    assertThat(bytes.length).isLessThan(128);
+  }
+
+  @Test
+  void shouldUseCustomCodecs() {
+    final Session session = newSession();
+    session.setAttribute("point", new Point(3, 4));
+    session.setAttribute("zip", 12345);
+    session.setAttribute("other", 12345);
+
+    final Session restored = writeThenRead(session);
+    assertThat(restored.getAttribute("point")).isEqualTo(new Point(3, 4));
+    assertThat(restored.getAttribute("zip")).isEqualTo(12345);
+    assertThat(restored.getAttribute("other")).isEqualTo(12345);
+  }
+
+  @Test
+  void shouldWriteWellKnownNamesAsIds() {
+    final TkAttributeCodecsBuilder builder = new TkAttributeCodecsBuilder();
+    for (int i = 0; i < 200; i++) {
+      builder.addNames("name" + i);
+    }
+    final TkSerializer serializer = new TkCompactSerializer(builder.addNames("name0").build());
+
+    final Session session = newSession();
+    session.setAttribute("name0", "name199");
+    session.setAttribute("name150", "name1");
+    session.setAttribute("unknown", "name2");
+    final byte[] bytes = serializer.write(session);
+    assertThat(serializer.read(bytes).attributes()).isEqualTo(session.attributes());
+
+    session.removeAttribute("unknown");
+    final int withoutUnknown = serializer.write(session).length;
+    final int unknownAttribute = bytes.length - withoutUnknown;
+    // length prefix + name tag + string length + "unknown" + value id
+    assertThat(unknownAttribute).isEqualTo(1 + 1 + 1 + 7 + 1);
+    assertThat(new TkCompactSerializer().write(session).length).isGreaterThan(withoutUnknown + 20);
+  }
+
+  @Test
+  void shouldRejectInvalidTags() {
+    final TkAttributeCodecsBuilder builder = new TkAttributeCodecsBuilder();
+    assertThatThrownBy(() -> builder.add(new PointCodec(10)))
+        .isInstanceOf(IllegalArgumentException.class);
+    builder.add(new PointCodec());
+    assertThatThrownBy(() -> builder.add("zip", new ZipCodec(PointCodec.TAG)))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  static final class Point {
+    private final int x;
+    private final int y;
+
+    Point(int x, int y) {
+      this.x = x;
+      this.y = y;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Point && ((Point) o).x == x && ((Point) o).y == y;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * x + y;
+    }
+  }
+
+  private static final class PointCodec implements TkAttributeCodec<Point> {
+    static final int TAG = 100;
+    private final int tag;
+
+    PointCodec() {
+      this(TAG);
+    }
+
+    PointCodec(int tag) {
+      this.tag = tag;
+    }
+
+    @Override
+    public int tag() {
+      return tag;
+    }
+
+    @Override
+    public Class<Point> type() {
+      return Point.class;
+    }
+
+    @Override
+    public void write(ObjectOutput output, Point value) throws IOException {
+      output.writeInt(value.x);
+      output.writeInt(value.y);
+    }
+
+    @Override
+    public Point read(ObjectInput input) throws IOException {
+      return new Point(input.readInt(), input.readInt());
+    }
+  }
+
+  private static final class ZipCodec implements TkAttributeCodec<Integer> {
+    private final int tag;
+
+    ZipCodec() {
+      this(101);
+    }
+
+    ZipCodec(int tag) {
+      this.tag = tag;
+    }
+
+    @Override
+    public int tag() {
+      return tag;
+    }
+
+    @Override
+    public Class<Integer> type() {
+      return Integer.class;
+    }
+
+    @Override
+    public void write(ObjectOutput output, Integer value) throws IOException {
+      output.writeUTF(String.format("%05d", value));
+    }
+
+    @Override
+    public Integer read(ObjectInput input) throws IOException {
+      return Integer.valueOf(input.readUTF());
+    }
+  }
+}
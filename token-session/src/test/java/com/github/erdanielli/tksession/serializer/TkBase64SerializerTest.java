@@ -18,6 +18,9 @@ import com.github.erdanielli.tksession.Session;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.Base64;
+import java.util.Random;
+
 import static java.nio.charset.StandardCharsets.ISO_8859_1;
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -44,4 +47,40 @@ class TkBase64SerializerTest extends TkSerializerSpec {
     Assertions.assertThatThrownBy(() -> serializer.readToken("ASDF"))
         .isInstanceOf(InvalidTokenException.class);
   }
+
+  @Test
+  void shouldWriteUrlSafeTokensWithoutPadding() {
+    final TkBase64Serializer urlSafe = new TkBase64Serializer(new TkJdkSerializer(), true);
+    final Session session = new NewSession();
+    final String token = urlSafe.writeToken(session);
+    assertThat(token).doesNotContain("=", "+", "/");
+    assertEquals(urlSafe.readToken(token), session);
+    assertEquals(serializer.readToken(token), session);
+    assertEquals(urlSafe.readToken(serializer.writeToken(session)), session);
+  }
+
+  @Test
+  void shouldMatchJdkCodec() {
+    final Random random = new Random(42);
+    for (int len = 0; len < 64; len++) {
+      final byte[] bytes = new byte[len];
+      random.nextBytes(bytes);
+      final String standard = Base64.getEncoder().encodeToString(bytes);
+      final String url = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+      assertThat(Base64Codec.standard().encodeToString(bytes, 0, len)).isEqualTo(standard);
+      assertThat(Base64Codec.urlSafe().encodeToString(bytes, 0, len)).isEqualTo(url);
+      assertThat(Base64Codec.decode(standard)).isEqualTo(bytes);
+      assertThat(Base64Codec.decode(url)).isEqualTo(bytes);
+    }
+  }
+
+  @Test
+  void shouldRejectMalformedBase64() {
+    Assertions.assertThatThrownBy(() -> Base64Codec.decode("QUJD?A=="))
+        .isInstanceOf(IllegalArgumentException.class);
+    Assertions.assertThatThrownBy(() -> Base64Codec.decode("QUJDR"))
+        .isInstanceOf(IllegalArgumentException.class);
+    Assertions.assertThatThrownBy(() -> Base64Codec.decode("QQ==="))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
 }
@@ -0,0 +1,240 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+import com.github.erdanielli.tksession.Session;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/** @author erdanielli */
+class TkCompactSerializerTest extends TkSerializerSpec {
+
+  @Override
+  protected TkSerializer createTkSerializer() {
+    return new TkCompactSerializer();
+  }
+
+  @Test
+  void shouldBeMuchSmallerThanJdkFormat() {
+    final Session session = newSession();
+    session.setAttribute("name", "John");
+    session.setAttribute("age", 37);
+    session.setAttribute("admin", true);
+    session.setAttribute("visits", 1234567890123L);
+
+    final int compact = new TkCompactSerializer().write(session).length;
+    final int jdk = new TkJdkSerializer().write(session).length;
+    assertThat(compact).isLessThan(jdk / 2);
+  }
+
+  @Test
+  void shouldFallbackToJavaSerialization() {
+    final Session session = newSession();
+    session.setAttribute("list", new ArrayList<>(Arrays.asList(1, "two")));
+    assertThat(writeThenRead(session).getAttribute("list")).isEqualTo(Arrays.asList(1, "two"));
+  }
+
+  @Test
+  void shouldRejectTruncatedInput() {
+    final Session session = newSession();
+    session.setAttribute("name", "John");
+    final byte[] bytes = new TkCompactSerializer().write(session);
+    assertThatThrownBy(
+            () -> new TkCompactSerializer().read(Arrays.copyOf(bytes, bytes.length - 1)))
+        .isInstanceOf(UncheckedIOException.class);
+  }
+
+  @Test
+  void shouldDecodeValuesOnlyWhenRead() {
+    final List<String> decoded = new ArrayList<>();
+    final TkSerializer serializer =
+        new TkCompactSerializer() {
+          @Override
+          protected Object readAttribute(ObjectInput input, String name) throws IOException {
+            decoded.add(name);
+            return super.readAttribute(input, name);
+          }
+        };
+    final Session session = newSession();
+    session.setAttribute("a", "A");
+    session.setAttribute("b", 2);
+    session.setAttribute("c", new ArrayList<>(Arrays.asList(1, "two")));
+
+    final Session restored = serializer.read(serializer.write(session));
+    assertThat(Collections.list(restored.getAttributeNames())).containsOnly("a", "b", "c");
+    assertThat(decoded).isEmpty();
+    assertThat(restored.getAttribute("b")).isEqualTo(2);
+    assertThat(restored.getAttribute("b")).isEqualTo(2);
+    assertThat(decoded).containsExactly("b");
+    restored.setAttribute("a", "replaced");
+    restored.removeAttribute("c");
+    assertThat(restored.attributes()).containsOnlyKeys("a", "b").containsEntry("a", "replaced");
+    assertThat(decoded).containsExactly("b");
+  }
+
+  @Test
+  void shouldRejectUndecodableValuesWhenRead() {
+    final TkSerializer serializer =
+        new TkCompactSerializer() {
+          @Override
+          protected Object readAttribute(ObjectInput input, String name) throws IOException {
+            throw new IOException("boom");
+          }
+        };
+    final Session session = newSession();
+    session.setAttribute("a", "A");
+    final Session restored = serializer.read(serializer.write(session));
+    assertThatThrownBy(() -> restored.getAttribute("a"))
+        .isInstanceOf(InvalidTokenException.class)
+        .hasRootCauseInstanceOf(IOException.class);
+  }
+
+  @Test
+  void shouldRejectOutOfRangeIntegers() {
+    final TkSerializer serializer = new TkCompactSerializer();
+    final Session session = newSession();
+    session.setAttribute("n", 1);
+    final byte[] asInt = serializer.write(session);
+    session.setAttribute("n", 1L);
+    final byte[] tampered = serializer.write(session);
+    int tag = 0;
+    while (asInt[tag] == tampered[tag]) {
+      tag++;
+    }
+    session.setAttribute("n", 1L << 40);
+    final byte[] bytes = serializer.write(session);
+    bytes[tag] = asInt[tag];
+    final Session restored = serializer.read(bytes);
+    assertThatThrownBy(() -> restored.getAttribute("n"))
+        .isInstanceOf(InvalidTokenException.class)
+        .hasRootCauseInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldCopyUntouchedValuesVerbatim() {
+    final List<String> encoded = new ArrayList<>();
+    final List<String> decoded = new ArrayList<>();
+    final TkSerializer serializer =
+        new TkCompactSerializer() {
+          @Override
+          protected void writeAttribute(ObjectOutput output, String name, Object value)
+              throws IOException {
+            encoded.add(name);
+            super.writeAttribute(output, name, value);
+          }
+
+          @Override
+          protected Object readAttribute(ObjectInput input, String name) throws IOException {
+            decoded.add(name);
+            return super.readAttribute(input, name);
+          }
+        };
+    final Session session = newSession();
+    session.setAttribute("untouched", new ArrayList<>(Arrays.asList(1, "two")));
+    session.setAttribute("immutable", "read only");
+    session.setAttribute("mutable", new ArrayList<>(Arrays.asList(3, "four")));
+    session.setAttribute("replaced", 5);
+    final byte[] original = serializer.write(session);
+    encoded.clear();
+
+    final Session restored = serializer.read(original);
+    assertThat(restored.getAttribute("immutable")).isEqualTo("read only");
+    assertThat(restored.getAttribute("mutable")).isEqualTo(Arrays.asList(3, "four"));
+    restored.setAttribute("replaced", 6);
+    assertThat(restored.getEncodedAttribute("untouched")).isNotNull();
+    assertThat(restored.getEncodedAttribute("immutable")).isNotNull();
+    assertThat(restored.getEncodedAttribute("mutable")).isNull();
+    assertThat(restored.getEncodedAttribute("replaced")).isNull();
+
+    final byte[] rewritten = serializer.write(restored);
+    assertThat(encoded).containsOnly("mutable", "replaced");
+    assertThat(decoded).containsOnly("immutable", "mutable");
+    final Session again = serializer.read(rewritten);
+    assertThat(again.getAttribute("untouched")).isEqualTo(Arrays.asList(1, "two"));
+    assertThat(again.getAttribute("replaced")).isEqualTo(6);
+
+    final TkSerializer other = new TkCompactSerializer();
+    assertThat(other.read(other.write(serializer.read(original))).attributes())
+        .containsOnlyKeys("untouched", "immutable", "mutable", "replaced");
+  }
+
+  @Test
+  void shouldOffloadLargeValuesToTheStore() {
+    final TkMemoryAttributeStore store = new TkMemoryAttributeStore(10);
+    final TkSerializer serializer =
+        new TkCompactSerializer(new TkAttributeCodecsBuilder().build(), store, 64);
+    final Session session = newSession();
+    session.setAttribute("small", "tiny");
+    session.setAttribute("large", String.join("", Collections.nCopies(1000, "x")));
+
+    final byte[] bytes = serializer.write(session);
+    assertThat(bytes.length).isLessThan(100);
+    assertThat(store.size()).isEqualTo(1);
+    final Session restored = serializer.read(bytes);
+    assertEquals(restored, session);
+    assertThat(serializer.write(restored)).isEqualTo(bytes);
+  }
+
+  @Test
+  void shouldRejectValuesReplacedInTheStore() {
+    final TkMemoryAttributeStore store = new TkMemoryAttributeStore(10);
+    final TkSerializer serializer =
+        new TkCompactSerializer(new TkAttributeCodecsBuilder().build(), store, 64);
+    final Session session = newSession();
+    session.setAttribute("large", String.join("", Collections.nCopies(1000, "x")));
+    final byte[] older = serializer.write(session);
+    session.setAttribute("large", String.join("", Collections.nCopies(1000, "y")));
+    serializer.write(session);
+
+    final Session restored = serializer.read(older);
+    assertThatThrownBy(() -> restored.getAttribute("large"))
+        .isInstanceOf(InvalidTokenException.class)
+        .hasMessageContaining("replaced");
+    final Session unknown = new TkCompactSerializer().read(older);
+    assertThatThrownBy(() -> unknown.getAttribute("large"))
+        .isInstanceOf(InvalidTokenException.class);
+  }
+
+  @Test
+  void shouldKeepOffloadedValuesInFiles() throws IOException {
+    final Path directory = Files.createTempDirectory("tksession");
+    final TkFileAttributeStore store = new TkFileAttributeStore(directory);
+    final TkSerializer serializer =
+        new TkCompactSerializer(new TkAttributeCodecsBuilder().build(), store, 64);
+    final Session session = newSession();
+    session.setAttribute("large", new ArrayList<>(Collections.nCopies(100, "value")));
+
+    final byte[] bytes = serializer.write(session);
+    assertThat(serializer.read(bytes).getAttribute("large"))
+        .isEqualTo(session.getAttribute("large"));
+    assertThat(store.purge(Duration.ofHours(1L))).isZero();
+    assertThat(store.purge(Duration.ofMillis(-1000L))).isEqualTo(1);
+    assertThatThrownBy(() -> serializer.read(bytes).getAttribute("large"))
+        .isInstanceOf(InvalidTokenException.class);
+  }
+}
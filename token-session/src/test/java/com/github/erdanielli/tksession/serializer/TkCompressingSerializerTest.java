@@ -0,0 +1,85 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+import com.github.erdanielli.tksession.Session;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/** @author erdanielli */
+class TkCompressingSerializerTest extends TkSerializerSpec {
+  private TkSerializer plain = new TkCompactSerializer();
+  private TkSerializer serializer = new TkCompressingSerializer(plain, 64);
+
+  @Override
+  protected TkSerializer createTkSerializer() {
+    return serializer;
+  }
+
+  @Test
+  void shouldCompressAboveThreshold() {
+    final Session session = newSession();
+    session.setAttribute("authorities", "ROLE_USER,ROLE_ADMIN,ROLE_USER_ADMIN,ROLE_USER_READ");
+    session.setAttribute("saved", "/admin/users?page=1&size=20&sort=name,asc&filter=active");
+
+    final byte[] token = serializer.write(session);
+    assertThat(token[0]).isEqualTo(TkCompressingSerializer.DEFLATED);
+    assertThat(token.length).isLessThan(plain.write(session).length);
+    assertEquals(serializer.read(token), session);
+  }
+
+  @Test
+  void shouldStoreBelowThreshold() {
+    final Session session = newSession();
+    final byte[] token = serializer.write(session);
+    assertThat(token[0]).isEqualTo(TkCompressingSerializer.STORED);
+    assertThat(token.length).isEqualTo(plain.write(session).length + 1);
+  }
+
+  @Test
+  void shouldStoreWhenCompressionDoesNotPay() {
+    final byte[] noise = new byte[256];
+    new Random(42).nextBytes(noise);
+    final Session session = newSession();
+    session.setAttribute("noise", noise);
+
+    final byte[] token = serializer.write(session);
+    assertThat(token[0]).isEqualTo(TkCompressingSerializer.STORED);
+    assertThat((byte[]) serializer.read(token).getAttribute("noise")).isEqualTo(noise);
+  }
+
+  @Test
+  void shouldReadTokensWrittenWithAnyThreshold() {
+    final Session session = newSession();
+    session.setAttribute("text", "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa");
+    final byte[] compressed = new TkCompressingSerializer(plain, 0).write(session);
+    final byte[] stored = new TkCompressingSerializer(plain, Integer.MAX_VALUE).write(session);
+    assertEquals(serializer.read(compressed), session);
+    assertEquals(serializer.read(stored), session);
+  }
+
+  @Test
+  void shouldRejectUnknownOrCorruptedInput() {
+    assertThatThrownBy(() -> serializer.read(new byte[] {9, 1, 2}))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> serializer.read(new byte[] {1, 100, 2, 3}))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> serializer.read(new byte[] {1, (byte) 0xFF, (byte) 0xFF, 0x7F}))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
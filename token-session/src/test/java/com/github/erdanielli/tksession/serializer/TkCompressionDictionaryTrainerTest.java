@@ -0,0 +1,90 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+import com.github.erdanielli.tksession.Session;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/** @author erdanielli */
+class TkCompressionDictionaryTrainerTest extends TkSerializerSpec {
+  private TkSerializer plain = new TkJdkSerializer();
+  private TkCompressionDictionary dictionary = new TkCompressionDictionary(1, train());
+
+  @Override
+  protected TkSerializer createTkSerializer() {
+    return new TkCompressingSerializer(plain, 0, Collections.singletonList(dictionary));
+  }
+
+  @Test
+  void shouldCompressBetterThanPlainDeflate() {
+    final Session session = sampleSession(1_000);
+    final int withDictionary = createTkSerializer().write(session).length;
+    final int withoutDictionary = new TkCompressingSerializer(plain, 0).write(session).length;
+    assertThat(withDictionary).isLessThan(withoutDictionary * 2 / 3);
+    assertEquals(writeThenRead(session), session);
+  }
+
+  @Test
+  void shouldRotateDictionaries() {
+    final TkCompressionDictionary next = new TkCompressionDictionary(2, train());
+    final TkSerializer old = createTkSerializer();
+    final TkSerializer rotated =
+        new TkCompressingSerializer(plain, 0, Arrays.asList(dictionary, next));
+
+    final Session session = sampleSession(1_000);
+    final byte[] oldToken = old.write(session);
+    final byte[] newToken = rotated.write(session);
+    assertThat(oldToken[1]).isEqualTo((byte) 1);
+    assertThat(newToken[1]).isEqualTo((byte) 2);
+    assertEquals(rotated.read(oldToken), session);
+    assertEquals(rotated.read(newToken), session);
+    assertThatThrownBy(() -> old.read(newToken)).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldRespectMaxSize() {
+    assertThat(TkCompressionDictionaryTrainer.train(samples(), 100)).hasSize(100);
+    assertThat(TkCompressionDictionaryTrainer.train(Collections.emptyList(), 100)).isEmpty();
+  }
+
+  private byte[] train() {
+    return TkCompressionDictionaryTrainer.train(samples(), 4096);
+  }
+
+  private List<byte[]> samples() {
+    final List<byte[]> samples = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      samples.add(plain.write(sampleSession(i)));
+    }
+    return samples;
+  }
+
+  private Session sampleSession(int i) {
+    final Session session = newSession();
+    session.setAttribute("SPRING_SECURITY_CONTEXT", "user" + i);
+    session.setAttribute(
+        "authorities", "ROLE_USER,ROLE_CUSTOMER" + (i % 3 == 0 ? ",ROLE_ADMIN" : ""));
+    session.setAttribute("locale", i % 2 == 0 ? "pt_BR" : "en_US");
+    session.setAttribute("cart", new ArrayList<>(Arrays.asList(i, i + 1, i + 2)));
+    return session;
+  }
+}
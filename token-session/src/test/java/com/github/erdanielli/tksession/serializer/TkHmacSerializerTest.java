@@ -0,0 +1,113 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+import com.github.erdanielli.tksession.Session;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/** @author erdanielli */
+class TkHmacSerializerTest extends TkSerializerSpec {
+
+  @Override
+  protected TkSerializer createTkSerializer() {
+    return new TkHmacSerializer(Arrays.asList("old", "new"), new TkJdkSerializer());
+  }
+
+  @Test
+  void shouldSignPlainPayload() {
+    final Session session = newSession();
+    final byte[] plain = new TkJdkSerializer().write(session);
+    final byte[] token = createTkSerializer().write(session);
+    assertThat(token).hasSize(1 + plain.length + TkHmacSerializer.TAG_LENGTH);
+    assertThat(token[0] & 0xFF).isEqualTo(TkKeyRing.keyId("new"));
+    assertThat(Arrays.copyOfRange(token, 1, 1 + plain.length)).isEqualTo(plain);
+  }
+
+  @Test
+  void shouldSignInPlaceWhenThePayloadHasRoom() {
+    final Session session = newSession();
+    final byte[] plain = new TkJdkSerializer().write(session);
+    final TkHmacSerializer tight = new TkHmacSerializer("new", payload(plain, 0));
+    final TkHmacSerializer roomy =
+        new TkHmacSerializer("new", payload(plain, TkHmacSerializer.TAG_LENGTH));
+    final ByteBuffer copied = tight.write(session, 3);
+    final ByteBuffer inPlace = roomy.write(session, 3);
+    assertThat(copied.position()).isEqualTo(3);
+    assertThat(inPlace.position()).isEqualTo(3);
+    assertThat(inPlace.array()).hasSize(3 + 1 + plain.length + TkHmacSerializer.TAG_LENGTH);
+    assertThat(TkSerializer.toByteArray(inPlace)).isEqualTo(TkSerializer.toByteArray(copied));
+    assertEquals(createTkSerializer().read(TkSerializer.toByteArray(inPlace)), session);
+  }
+
+  /** Writes {@code plain} followed by {@code slack} unused bytes. */
+  private static TkSerializer payload(byte[] plain, int slack) {
+    return new TkSerializer() {
+      @Override
+      public byte[] write(Session session) {
+        return plain.clone();
+      }
+
+      @Override
+      public Session read(byte[] input) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public ByteBuffer write(Session session, int headroom) {
+        final byte[] result = new byte[headroom + plain.length + slack];
+        System.arraycopy(plain, 0, result, headroom, plain.length);
+        return ByteBuffer.wrap(result, headroom, plain.length);
+      }
+    };
+  }
+
+  @Test
+  void shouldReadTokensSignedByPreviousKeys() {
+    final Session session = newSession();
+    final byte[] oldToken = new TkHmacSerializer("old", new TkJdkSerializer()).write(session);
+    assertEquals(createTkSerializer().read(oldToken), session);
+    assertThatThrownBy(
+            () -> new TkHmacSerializer("other", new TkJdkSerializer()).read(oldToken))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Unknown key id");
+  }
+
+  @Test
+  void shouldRejectTamperedTokens() {
+    final TkSerializer serializer = createTkSerializer();
+    final byte[] token = serializer.write(newSession());
+    assertThatThrownBy(() -> serializer.read(token, 0, 16))
+        .isInstanceOf(IllegalArgumentException.class);
+    for (int i : new int[] {1, token.length / 2, token.length - 1}) {
+      final byte[] tampered = token.clone();
+      tampered[i] ^= 1;
+      assertThatThrownBy(() -> serializer.read(tampered))
+          .isInstanceOf(IllegalArgumentException.class)
+          .hasMessage("Invalid signature");
+    }
+  }
+
+  @Test
+  void shouldRejectDuplicateKeyIds() {
+    assertThatThrownBy(
+            () -> new TkHmacSerializer(Arrays.asList("same", "same"), new TkJdkSerializer()))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
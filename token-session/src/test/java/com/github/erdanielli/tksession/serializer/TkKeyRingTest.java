@@ -0,0 +1,378 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+import com.github.erdanielli.tksession.RestoredTokenSession;
+import com.github.erdanielli.tksession.Session;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.Key;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.emptyMap;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/** @author erdanielli */
+class TkKeyRingTest extends TkSerializerSpec {
+
+  @Override
+  protected TkSerializer createTkSerializer() {
+    return new TkAesSerializer(
+        new TkKeyRingBuilder().add("old").add("new").build(), new TkJdkSerializer());
+  }
+
+  @Test
+  void shouldWriteActiveKeyIdAndReadPreviousKeys() {
+    final Session session = newSession();
+    final TkAesSerializer before =
+        new TkAesSerializer(new TkKeyRingBuilder().add("old").build(), new TkJdkSerializer());
+    final TkSerializer after = createTkSerializer();
+    final byte[] oldToken = before.write(session);
+    final byte[] newToken = after.write(session);
+    assertThat(oldToken[0] & 0xFF).isEqualTo(TkKeyRing.keyId("old"));
+    assertThat(newToken[0] & 0xFF).isEqualTo(TkKeyRing.keyId("new"));
+    assertEquals(after.read(oldToken), session);
+    assertThatThrownBy(() -> before.read(newToken)).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldReadTokensWrittenBeforeKeyIds() {
+    final Session session = newSession();
+    final byte[] legacyToken = new TkAesSerializer("s3cret", new TkJdkSerializer()).write(session);
+    final TkKeyRing keys = new TkKeyRingBuilder().legacy("s3cret").add("new").build();
+    assertThat(keys.getActiveKeyId()).isEqualTo(TkKeyRing.keyId("new"));
+    assertEquals(new TkAesSerializer(keys, new TkJdkSerializer()).read(legacyToken), session);
+  }
+
+  @Test
+  void shouldWriteSuiteIdAndReadMixedSuites() {
+    final TkCipherSuite chaCha = TkCipherSuite.chaCha20Poly1305();
+    assumeTrue(chaCha.isAvailable());
+    final Session session = newSession();
+    final TkSerializer aes = createTkSerializer();
+    final TkSerializer chaCha20 =
+        new TkAesSerializer(
+            new TkKeyRingBuilder().add("old").add("new").suite(chaCha).build(),
+            new TkJdkSerializer());
+    final byte[] aesToken = aes.write(session);
+    final byte[] chaChaToken = chaCha20.write(session);
+    assertThat(aesToken[1] & 0x7F).isEqualTo(TkCipherSuite.AES_GCM);
+    assertThat(chaChaToken[1] & 0x7F).isEqualTo(TkCipherSuite.CHACHA20_POLY1305);
+    assertEquals(aes.read(chaChaToken), session);
+    assertEquals(chaCha20.read(aesToken), session);
+    chaChaToken[chaChaToken.length - 1] ^= 1;
+    assertThatThrownBy(() -> aes.read(chaChaToken))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("ChaCha20-Poly1305 decryption failed");
+  }
+
+  @Test
+  void shouldReinitChaCha20CiphersOnlyOnRepeatedNonces() {
+    final TkCipherSuite chaCha = TkCipherSuite.chaCha20Poly1305();
+    assumeTrue(chaCha.isAvailable());
+    final TkCipherSuite.Aead aead =
+        chaCha.newAead(TkKeyRing.key("new"), TkNonceGenerator.counter());
+    final byte[] text = "text".getBytes(UTF_8);
+    final ByteBuffer sealed = aead.encrypt(text, 0, text.length, 0, new byte[0]);
+    for (int i = 0; i < 3; i++) {
+      assertThat(aead.decrypt(sealed.array(), 0, sealed.remaining(), new byte[0])).isEqualTo(text);
+    }
+
+    final JcaCipherSuite.PooledCipher pooled = new JcaCipherSuite.PooledCipher(null, true);
+    final Key key = new SecretKeySpec(TkKeyRing.key("new"), "ChaCha20");
+    final byte[] nonce = new byte[12];
+    assertThat(pooled.repeats(key, nonce, 0, 12)).isFalse();
+    assertThat(pooled.repeats(key, nonce, 0, 12)).isTrue();
+    nonce[11] = 1;
+    assertThat(pooled.repeats(key, nonce, 0, 12)).isFalse();
+    assertThat(pooled.repeats(new SecretKeySpec(TkKeyRing.key("old"), "ChaCha20"), nonce, 0, 12))
+        .isFalse();
+    final JcaCipherSuite.PooledCipher aes = new JcaCipherSuite.PooledCipher(null, false);
+    assertThat(aes.repeats(key, nonce, 0, 12)).isFalse();
+    assertThat(aes.repeats(key, nonce, 0, 12)).isFalse();
+  }
+
+  @Test
+  void shouldRejectTokensWithoutEnvelope() throws Exception {
+    final Session session = newSession();
+    final byte[] plain = new TkJdkSerializer().write(session);
+    final byte[] nonce = new byte[12];
+    final Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+    cipher.init(
+        Cipher.ENCRYPT_MODE,
+        new SecretKeySpec(TkKeyRing.key("new"), "AES"),
+        new GCMParameterSpec(128, nonce));
+    final byte[] encrypted = cipher.doFinal(plain);
+    final byte[] token = new byte[1 + nonce.length + encrypted.length];
+    token[0] = (byte) TkKeyRing.keyId("new");
+    System.arraycopy(encrypted, 0, token, 1 + nonce.length, encrypted.length);
+    assertThatThrownBy(() -> createTkSerializer().read(token))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Unknown key id or cipher suite");
+  }
+
+  @Test
+  void shouldWriteDeterministicTokensWithAesSiv() {
+    final Session session = newSession();
+    final TkSerializer serializer =
+        new TkAesSerializer(
+            new TkKeyRingBuilder().add("old").add("new").suite(TkCipherSuite.aesSiv()).build(),
+            new TkJdkSerializer());
+    final byte[] token = serializer.write(session);
+    assertThat(token[1] & 0x7F).isEqualTo(TkCipherSuite.AES_SIV);
+    assertThat(serializer.write(session)).isEqualTo(token);
+    assertEquals(createTkSerializer().read(token), session);
+    session.setAttribute("foo", "bar");
+    final byte[] changed = serializer.write(session);
+    assertThat(changed).isNotEqualTo(token);
+    changed[changed.length - 1] ^= 1;
+    assertThatThrownBy(() -> serializer.read(changed))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("AES-SIV decryption failed");
+  }
+
+  @Test
+  void shouldMatchRfc5297Vectors() {
+    final AesSiv deterministic =
+        new AesSiv(
+            hex(
+                "fffefdfcfbfaf9f8f7f6f5f4f3f2f1f0"
+                    + "f0f1f2f3f4f5f6f7f8f9fafbfcfdfeff"),
+            null);
+    final byte[] plain = hex("112233445566778899aabbccddee");
+    final byte[] ad = hex("101112131415161718191a1b1c1d1e1f2021222324252627");
+    final byte[] expected =
+        hex("85632d07c6e8f37f950acd320a2ecc93" + "40c02b9690c4dc04daef7f6afe5c");
+    assertThat(TkSerializer.toByteArray(deterministic.encrypt(plain, 0, plain.length, 0, ad)))
+        .isEqualTo(expected);
+    assertThat(deterministic.decrypt(expected, 0, expected.length, ad)).isEqualTo(plain);
+
+    final AesSiv nonceBased =
+        new AesSiv(
+            hex(
+                "7f7e7d7c7b7a79787776757473727170"
+                    + "404142434445464748494a4b4c4d4e4f"),
+            null);
+    final byte[][] data = {
+      hex(
+          "00112233445566778899aabbccddeeff"
+              + "deaddadadeaddadaffeeddccbbaa9988"
+              + "7766554433221100"),
+      hex("102030405060708090a0"),
+      hex("09f911029d74e35bd84156c5635688c0")
+    };
+    final byte[] text =
+        hex(
+            "7468697320697320736f6d6520706c61"
+                + "696e7465787420746f20656e63727970"
+                + "74207573696e67205349562d414553");
+    final byte[] sealed =
+        hex(
+            "7bdb6e3b432667eb06f4d14bff2fbd0f"
+                + "cb900f2fddbe404326601965c889bf17"
+                + "dba77ceb094fa663b7a3f748ba8af829"
+                + "ea64ad544a272e9c485b62a3fd5c0d");
+    assertThat(TkSerializer.toByteArray(nonceBased.encrypt(text, 0, text.length, 0, data)))
+        .isEqualTo(sealed);
+    assertThat(nonceBased.decrypt(sealed, 0, sealed.length, data)).isEqualTo(text);
+  }
+
+  @Test
+  void shouldTellExpiredTokensFromTheirEnvelope() {
+    final TkSerializer serializer = createTkSerializer();
+    final long now = System.currentTimeMillis();
+    final byte[] live =
+        serializer.write(new RestoredTokenSession(UUID.randomUUID(), now, now, 60, emptyMap()));
+    final byte[] eternal =
+        serializer.write(new RestoredTokenSession(UUID.randomUUID(), 0, 0, 0, emptyMap()));
+    final byte[] expired =
+        serializer.write(
+            new RestoredTokenSession(UUID.randomUUID(), now - 5_000, now - 2_000, 1, emptyMap()));
+    assertThat(serializer.expired(live, 0, 8)).isFalse();
+    assertThat(serializer.expired(eternal, 0, 8)).isFalse();
+    assertThat(serializer.expired(expired, 0, 8)).isTrue();
+    assertThat(serializer.read(expired).expired()).isTrue();
+    final TkBase64Serializer base64 = new TkBase64Serializer(serializer);
+    assertThat(base64.expired(base64.writeToken(serializer.read(expired)))).isTrue();
+    assertThat(base64.expired(base64.writeToken(serializer.read(live)))).isFalse();
+    assertThat(base64.expired("*")).isFalse();
+    final TkSerializer legacy = new TkAesSerializer("s3cret", new TkJdkSerializer());
+    assertThat(legacy.expired(legacy.write(serializer.read(expired)), 0, 8)).isFalse();
+
+    live[5] ^= 1;
+    assertThatThrownBy(() -> serializer.read(live)).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldNeverReadAnExpiryOutOfLegacyTokens() {
+    final TkSerializer mixed =
+        new TkAesSerializer(
+            new TkKeyRingBuilder().legacy("s3cret").add("new").build(), new TkJdkSerializer());
+    final long past = System.currentTimeMillis() - 10_000;
+    final Session session = new RestoredTokenSession(UUID.randomUUID(), past, past, 1, emptyMap());
+    for (int i = 0; i < 64; i++) {
+      final byte[] legacyToken =
+          new TkAesSerializer("s3cret", new TkJdkSerializer(), TkNonceGenerator.counter())
+              .write(session);
+      assertThat(mixed.expired(legacyToken, 0, 8)).isFalse();
+      assertEquals(mixed.read(legacyToken), session);
+    }
+    final byte[] unmarked = mixed.write(session);
+    assertThat(mixed.expired(unmarked, 0, 8)).isTrue();
+    unmarked[1] &= 0x7F;
+    assertThat(mixed.expired(unmarked, 0, 8)).isFalse();
+  }
+
+  @Test
+  void shouldPickAvailableSuites() {
+    final TkCipherSuite missing = TkCipherSuite.aesGcm("NoSuchProvider");
+    assertThat(missing.isAvailable()).isFalse();
+    assertThatThrownBy(() -> new TkKeyRingBuilder().add("new").suite(missing).build())
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThat(TkCipherSuite.fastest(missing, TkCipherSuite.aesGcm()).id())
+        .isEqualTo(TkCipherSuite.AES_GCM);
+    assertThat(TkCipherSuite.forName("auto", null).isAvailable()).isTrue();
+    assertThatThrownBy(() -> TkCipherSuite.fastest(missing))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> TkCipherSuite.forName("rot13", null))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldRejectSecretsSharingAnId() {
+    final Map<Integer, String> byId = new HashMap<>();
+    String first = null;
+    String second = null;
+    for (int i = 0; second == null; i++) {
+      final String secret = "secret" + i;
+      first = byId.putIfAbsent(TkKeyRing.keyId(secret), secret);
+      second = first == null ? null : secret;
+    }
+    final TkKeyRingBuilder builder = new TkKeyRingBuilder().add(first).add(second);
+    assertThatThrownBy(builder::build).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new TkKeyRingBuilder().build())
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldEvictPreviousKeySharingAnIdOnRotation() {
+    final Map<Integer, String> byId = new HashMap<>();
+    String first = null;
+    String second = null;
+    for (int i = 0; second == null; i++) {
+      final String secret = "secret" + i;
+      first = byId.putIfAbsent(TkKeyRing.keyId(secret), secret);
+      second = first == null ? null : secret;
+    }
+    final Session session = newSession();
+    final TkAesSerializer serializer =
+        new TkAesSerializer(new TkKeyRingBuilder().add(first).build(), new TkJdkSerializer());
+    final byte[] firstToken = serializer.write(session);
+    serializer.rotate("other");
+    final byte[] otherToken = serializer.write(session);
+    serializer.rotate(second);
+    assertThat(serializer.getKeyRing().getActiveKeyId()).isEqualTo(TkKeyRing.keyId(second));
+    assertThatThrownBy(() -> serializer.read(firstToken))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertEquals(serializer.read(otherToken), session);
+    assertEquals(serializer.read(serializer.write(session)), session);
+    final String evicted = first;
+    assertThatThrownBy(() -> serializer.rotate(evicted))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldDeriveRfc5869Keys() {
+    final byte[] ikm = new byte[22];
+    Arrays.fill(ikm, (byte) 0x0b);
+    final byte[] okm =
+        Hkdf.derive(
+            ikm, hex("000102030405060708090a0b0c"), hex("f0f1f2f3f4f5f6f7f8f9"), 42);
+    assertThat(okm)
+        .isEqualTo(
+            hex(
+                "3cb25f25faacd57a90434f64d0362f2a2d2d0a90cf1a5a4c5db02d56ecc4c5bf"
+                    + "34007208d5b887185865"));
+  }
+
+  @Test
+  void shouldKeepBoundedPreviousKeysOnRotation() {
+    final Session session = newSession();
+    final TkAesSerializer serializer =
+        new TkAesSerializer(new TkKeyRingBuilder().add("k0").build(), new TkJdkSerializer());
+    final List<byte[]> tokens = new ArrayList<>();
+    for (int i = 1; i <= 5; i++) {
+      tokens.add(serializer.write(session));
+      serializer.rotate("k" + i);
+      assertThat(serializer.getKeyRing().getActiveKeyId()).isEqualTo(TkKeyRing.keyId("k" + i));
+    }
+    assertThatThrownBy(() -> serializer.read(tokens.get(0)))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> serializer.read(tokens.get(1)))
+        .isInstanceOf(IllegalArgumentException.class);
+    for (byte[] token : tokens.subList(2, 5)) {
+      assertEquals(serializer.read(token), session);
+    }
+    serializer.rotate("k5");
+    assertEquals(serializer.read(tokens.get(2)), session);
+  }
+
+  @Test
+  void shouldRotateWhenSecretFileChanges() throws Exception {
+    final Path file = Files.createTempDirectory("tksession").resolve("secret");
+    Files.write(file, "first\n".getBytes(UTF_8));
+    final TkAesSerializer serializer =
+        new TkAesSerializer(new TkKeyRingBuilder().legacy("s3cret").build(), new TkJdkSerializer());
+    final Session session = newSession();
+    final byte[] legacyToken = serializer.write(session);
+    try (TkSecretWatcher ignored = TkSecretWatcher.watch(file, serializer)) {
+      assertThat(serializer.getKeyRing().getActiveKeyId()).isEqualTo(TkKeyRing.keyId("first"));
+      final byte[] firstToken = serializer.write(session);
+      Files.write(file, "second".getBytes(UTF_8));
+      final long deadline = System.currentTimeMillis() + 10_000;
+      while (serializer.getKeyRing().getActiveKeyId() != TkKeyRing.keyId("second")
+          && System.currentTimeMillis() < deadline) {
+        Thread.sleep(20);
+      }
+      assertThat(serializer.getKeyRing().getActiveKeyId()).isEqualTo(TkKeyRing.keyId("second"));
+      assertEquals(serializer.read(firstToken), session);
+      assertEquals(serializer.read(legacyToken), session);
+    } finally {
+      Files.delete(file);
+      Files.delete(file.getParent());
+    }
+  }
+
+  private static byte[] hex(String s) {
+    final byte[] result = new byte[s.length() / 2];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = (byte) Integer.parseInt(s.substring(2 * i, 2 * i + 2), 16);
+    }
+    return result;
+  }
+}
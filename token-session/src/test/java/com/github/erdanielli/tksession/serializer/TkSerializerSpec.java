@@ -22,6 +22,7 @@ import com.github.erdanielli.tksession.listener.SessionListenerNotifierBuilder;
 import org.junit.jupiter.api.Test;
 
 import javax.servlet.ServletContext;
+import java.nio.ByteBuffer;
 
 import static java.util.Collections.singletonMap;
 import static java.util.UUID.randomUUID;
@@ -49,6 +50,19 @@ public abstract class TkSerializerSpec {
     doTest(session);
   }
 
+  @Test
+  void shouldWriteAndReadSlices() {
+    final TkSerializer serializer = createTkSerializer();
+    final Session expected = newSession();
+    expected.setAttribute("foo", "Bar");
+    final ByteBuffer buffer = serializer.write(expected, 7);
+    assertThat(buffer.arrayOffset() + buffer.position()).isGreaterThanOrEqualTo(7);
+    assertEquals(serializer.read(TkSerializer.toByteArray(buffer)), expected);
+    final byte[] padded = new byte[buffer.remaining() + 10];
+    buffer.get(padded, 3, buffer.remaining());
+    assertEquals(serializer.read(padded, 3, padded.length - 10), expected);
+  }
+
   final void assertEquals(Session actual, Session expected) {
     assertThat(actual.getId()).isEqualTo(expected.getId());
     assertThat(actual.getCreationTime()).isEqualTo(expected.getCreationTime());
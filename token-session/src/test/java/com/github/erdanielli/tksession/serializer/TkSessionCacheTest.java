@@ -0,0 +1,145 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+import com.github.erdanielli.tksession.RestoredTokenSession;
+import com.github.erdanielli.tksession.Session;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.UUID.randomUUID;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/** @author erdanielli */
+class TkSessionCacheTest {
+  private final TkSessionCache cache = new TkSessionCache(100);
+
+  @Test
+  void shouldReadRepeatedTokensOnce() {
+    final TkBase64Serializer serializer = newSerializer(new TkCompactSerializer(), cache);
+    final String token = serializer.writeToken(newSession("name", "John"));
+
+    assertThat(serializer.readToken(token).getAttribute("name")).isEqualTo("John");
+    assertThat(serializer.readToken(token).getAttribute("name")).isEqualTo("John");
+    assertThat(cache.getMissCount()).isEqualTo(1L);
+    assertThat(cache.getHitCount()).isEqualTo(1L);
+    assertThat(cache.size()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldGiveEachReaderItsOwnCopy() {
+    final TkBase64Serializer serializer = newSerializer(new TkCompactSerializer(), cache);
+    final List<String> list = new ArrayList<>();
+    list.add("a");
+    final String token = serializer.writeToken(newSession("list", list));
+
+    final Session first = serializer.readToken(token);
+    @SuppressWarnings("unchecked")
+    final List<String> firstList = (List<String>) first.getAttribute("list");
+    firstList.add("b");
+    first.setAttribute("name", "John");
+
+    final Session second = serializer.readToken(token);
+    assertThat(second.getAttribute("list")).isEqualTo(list);
+    assertThat(second.getAttribute("name")).isNull();
+    assertThat(cache.getHitCount()).isEqualTo(1L);
+  }
+
+  @Test
+  void shouldNotCacheDecodedMutableValues() {
+    final TkBase64Serializer serializer = newSerializer(new TkJdkSerializer(), cache);
+    final String token = serializer.writeToken(newSession("list", new ArrayList<>()));
+
+    serializer.readToken(token);
+    serializer.readToken(token);
+    assertThat(cache.getMissCount()).isEqualTo(2L);
+    assertThat(cache.size()).isZero();
+  }
+
+  @Test
+  void shouldCacheDecodedImmutableValues() {
+    final TkBase64Serializer serializer = newSerializer(new TkJdkSerializer(), cache);
+    final String token = serializer.writeToken(newSession("name", "John"));
+
+    serializer.readToken(token);
+    assertThat(serializer.readToken(token).getAttribute("name")).isEqualTo("John");
+    assertThat(cache.getHitCount()).isEqualTo(1L);
+  }
+
+  @Test
+  void shouldNotCacheExpiredSessions() {
+    final TkBase64Serializer serializer = newSerializer(new TkCompactSerializer(), cache);
+    final String token =
+        serializer.writeToken(
+            new RestoredTokenSession(randomUUID(), 1L, 2L, 1, new HashMap<>()));
+
+    assertThat(serializer.readToken(token).expired()).isTrue();
+    assertThat(serializer.readToken(token).expired()).isTrue();
+    assertThat(cache.getMissCount()).isEqualTo(2L);
+  }
+
+  @Test
+  void shouldEvictLeastRecentlyUsed() {
+    final TkSessionCache small = new TkSessionCache(2);
+    final TkBase64Serializer serializer = newSerializer(new TkCompactSerializer(), small);
+    final String first = serializer.writeToken(newSession("n", 1));
+    final String second = serializer.writeToken(newSession("n", 2));
+    final String third = serializer.writeToken(newSession("n", 3));
+
+    serializer.readToken(first);
+    serializer.readToken(second);
+    serializer.readToken(third);
+    assertThat(small.size()).isLessThanOrEqualTo(2);
+    serializer.readToken(third);
+    assertThat(small.getHitCount()).isEqualTo(1L);
+    small.clear();
+    assertThat(small.size()).isZero();
+  }
+
+  @Test
+  void shouldDropSessionsOfRetiredKeys() {
+    final TkAesSerializer aes =
+        new TkAesSerializer(
+            new TkKeyRingBuilder().add("k0").build(), new TkCompactSerializer(), cache);
+    final TkBase64Serializer serializer = new TkBase64Serializer(aes, false, cache);
+    final String token = serializer.writeToken(newSession("name", "John"));
+    serializer.readToken(token);
+
+    for (int i = 1; i <= TkKeyRing.MAX_PREVIOUS_KEYS; i++) {
+      aes.rotate("k" + i);
+      assertThat(serializer.readToken(token).getAttribute("name")).isEqualTo("John");
+    }
+    assertThat(cache.size()).isEqualTo(1);
+    aes.rotate("k" + (TkKeyRing.MAX_PREVIOUS_KEYS + 1));
+    assertThat(cache.size()).isZero();
+    assertThatThrownBy(() -> serializer.readToken(token))
+        .isInstanceOf(InvalidTokenException.class);
+  }
+
+  private static TkBase64Serializer newSerializer(TkSerializer session, TkSessionCache cache) {
+    return new TkBase64Serializer(new TkAesSerializer("secr3t", session), false, cache);
+  }
+
+  private static Session newSession(String name, Object value) {
+    final Map<String, Object> attributes = new HashMap<>();
+    attributes.put(name, value);
+    final long now = System.currentTimeMillis();
+    return new RestoredTokenSession(randomUUID(), now, now, 60, attributes);
+  }
+}
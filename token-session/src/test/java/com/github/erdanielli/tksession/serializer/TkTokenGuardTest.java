@@ -0,0 +1,90 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+import com.github.erdanielli.tksession.RestoredTokenSession;
+import com.github.erdanielli.tksession.serializer.TkTokenGuard.Reason;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static java.util.UUID.randomUUID;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+/** @author erdanielli */
+class TkTokenGuardTest {
+  private final TkTokenGuard guard = new TkTokenGuard(8, 64);
+
+  @Test
+  void shouldAcceptSerializedTokens() {
+    final TkBase64Serializer serializer =
+        new TkBase64Serializer(new TkAesSerializer("secr3t", new TkJdkSerializer()), true);
+    final long now = System.currentTimeMillis();
+    final String token =
+        serializer.writeToken(
+            new RestoredTokenSession(
+                randomUUID(), now, now, 60, Collections.singletonMap("name", "John")));
+    new TkTokenGuard().check(token);
+    guard.check("QUJDREVGR0g");
+    guard.check("QUJDREVGR0g=");
+    guard.check("QUJD-_EVGR0");
+  }
+
+  @Test
+  void shouldRejectByReason() {
+    assertRejected("QUJDREVG" + String.join("", Collections.nCopies(60, "A")), Reason.TOO_LONG);
+    assertRejected("QUJD", Reason.TOO_SHORT);
+    assertRejected("QUJDREVGR", Reason.MALFORMED);
+    assertRejected("QUJDREVGR0g==", Reason.MALFORMED);
+    assertRejected("QUJDREVGR===", Reason.MALFORMED);
+    assertRejected("QUJDREVG\"0g", Reason.ILLEGAL_CHARACTER);
+    assertRejected("QUJD=EVGR0g=", Reason.ILLEGAL_CHARACTER);
+    assertRejected("QUJDREVGR\u00e9g", Reason.ILLEGAL_CHARACTER);
+    assertThat(guard.getRejectedCount(Reason.TOO_LONG)).isEqualTo(1L);
+    assertThat(guard.getRejectedCount(Reason.TOO_SHORT)).isEqualTo(1L);
+    assertThat(guard.getRejectedCount(Reason.MALFORMED)).isEqualTo(3L);
+    assertThat(guard.getRejectedCount(Reason.ILLEGAL_CHARACTER)).isEqualTo(3L);
+  }
+
+  @Test
+  void shouldRethrowPreallocatedExceptions() {
+    final Throwable first = catchThrowable(() -> guard.check("QUJD"));
+    final Throwable second = catchThrowable(() -> new TkTokenGuard().check("QUJD"));
+    assertThat(first).isSameAs(second).isInstanceOf(InvalidTokenException.class);
+    assertThat(first.getStackTrace()).isEmpty();
+  }
+
+  @Test
+  void shouldRefuseToWriteTokensItWouldReject() {
+    guard.checkWritable(String.join("", Collections.nCopies(64, "A")));
+    assertThatThrownBy(() -> guard.checkWritable(String.join("", Collections.nCopies(65, "A"))))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessage("Token of 65 characters exceeds the maximum of 64");
+  }
+
+  @Test
+  void shouldValidateBounds() {
+    assertThatThrownBy(() -> new TkTokenGuard(-1, 10))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new TkTokenGuard(10, 9)).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private void assertRejected(String token, Reason reason) {
+    assertThatThrownBy(() -> guard.check(token))
+        .isInstanceOf(InvalidTokenException.class)
+        .hasMessage("Token rejected: " + reason);
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.erdanielli.tksession.serializer;
+
+import com.github.erdanielli.tksession.Session;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/** @author erdanielli */
+class TkVersionedSerializerTest extends TkSerializerSpec {
+  private final TkSerializer jdk = new TkJdkSerializer();
+  private final TkSerializer compact = new TkCompactSerializer();
+
+  @Override
+  protected TkSerializer createTkSerializer() {
+    return new TkVersionedSerializerBuilder()
+        .add(TkVersionedSerializer.JDK, jdk)
+        .add(TkVersionedSerializer.COMPACT, compact)
+        .build();
+  }
+
+  @Test
+  void shouldWriteWithTheLastEngineAndReadAll() {
+    final Session session = newSession();
+    session.setAttribute("foo", "bar");
+    final TkSerializer before =
+        new TkVersionedSerializerBuilder().add(TkVersionedSerializer.JDK, jdk).build();
+    final TkSerializer after = createTkSerializer();
+    final byte[] oldToken = before.write(session);
+    final byte[] newToken = after.write(session);
+    assertThat(oldToken[0]).isEqualTo((byte) 0x21);
+    assertThat(newToken[0]).isEqualTo((byte) 0x22);
+    assertThat(newToken).hasSize(compact.write(session).length + 1);
+    assertEquals(after.read(oldToken), session);
+    assertEquals(after.read(newToken), session);
+    assertThatThrownBy(() -> before.read(newToken))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Unsupported token format: 34");
+  }
+
+  @Test
+  void shouldReadJdkTokensWrittenBeforeVersionHeaders() {
+    final TkSerializer serializer =
+        new TkVersionedSerializerBuilder()
+            .legacy(jdk)
+            .add(TkVersionedSerializer.COMPACT, compact)
+            .build();
+    final Session session = newSession();
+    session.setAttribute("foo", "bar");
+    assertEquals(serializer.read(jdk.write(session)), session);
+    assertEquals(serializer.read(serializer.write(session)), session);
+    assertThatThrownBy(() -> createTkSerializer().read(jdk.write(session)))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldRejectInvalidEngines() {
+    assertThatThrownBy(() -> new TkVersionedSerializerBuilder().build())
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new TkVersionedSerializerBuilder().add(32, jdk))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(
+            () ->
+                new TkVersionedSerializerBuilder()
+                    .add(TkVersionedSerializer.JDK, jdk)
+                    .add(TkVersionedSerializer.JDK, compact))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}